@@ -0,0 +1,104 @@
+package br.com.devmedia.webservice.benchmarks;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.EnumSet;
+import java.util.concurrent.TimeUnit;
+
+import org.glassfish.jersey.internal.MapPropertiesDelegate;
+import org.glassfish.jersey.server.ContainerRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import br.com.devmedia.webservice.dao.ContextoDePersistencia;
+import br.com.devmedia.webservice.domain.Tipo;
+import br.com.devmedia.webservice.resources.filter.AutenticacaoEAutorizacaoFilter;
+import br.com.devmedia.webservice.service.UsuarioService;
+
+// AutenticacaoEAutorizacaoFilter.filter de ponta a ponta (cabecalho, limites, autenticacao, autorizacao e o
+// fechamento do contexto de persistencia feito ao final da requisicao), com os usuarios no H2.
+// credenciaisEmCache e o caminho de toda requisicao autenticada apos a primeira dentro do TTL do cache.
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AutenticacaoFilterBenchmark {
+
+    private static final URI BASE = URI.create("http://localhost:8080/exemplo/webapi/");
+    private static final URI RECURSO = URI.create("http://localhost:8080/exemplo/webapi/usuarios");
+
+    private AutenticacaoEAutorizacaoFilter filtro;
+    private String credenciaisValidas;
+    private String credenciaisSemPermissao;
+
+    @Setup
+    public void preparar() throws IOException {
+        // o cache nao deve expirar durante a medicao
+        System.setProperty("imoveis.autenticacao.cache.ttlSegundos", "3600");
+        // os limites continuam sendo verificados (e medidos), mas altos o bastante para nunca recusar
+        System.setProperty("imoveis.limite.tipo.ADMINISTRADOR", "1e9/1000000");
+        System.setProperty("imoveis.limite.tipo.CLIENTE", "1e9/1000000");
+        BancoH2.iniciar();
+        BancoH2.criarUsuario("admin", "segredo", Tipo.ADMINISTRADOR);
+        BancoH2.criarUsuario("cliente", "segredo", Tipo.CLIENTE);
+
+        filtro = new AutenticacaoEAutorizacaoFilter(EnumSet.of(Tipo.FUNCIONARIO, Tipo.ADMINISTRADOR), null,
+                "UsuarioResource.recuperarUsuarios", new UsuarioService());
+        credenciaisValidas = basic("admin:segredo");
+        credenciaisSemPermissao = basic("cliente:segredo");
+
+        // coloca as credenciais no cache de autenticacao
+        filtrar(credenciaisValidas);
+        filtrar(credenciaisSemPermissao);
+    }
+
+    @TearDown
+    public void encerrar() {
+        BancoH2.encerrar();
+    }
+
+    @Benchmark
+    public ContainerRequest credenciaisEmCache() throws IOException {
+        return filtrar(credenciaisValidas);
+    }
+
+    @Benchmark
+    public ContainerRequest semPermissao() throws IOException {
+        return filtrar(credenciaisSemPermissao);
+    }
+
+    @Benchmark
+    public ContainerRequest cabecalhoMalFormado() throws IOException {
+        return filtrar("Basic %%%");
+    }
+
+    private ContainerRequest filtrar(String autorizacao) throws IOException {
+        ContainerRequest requisicao = new ContainerRequest(BASE, RECURSO, "GET", null, new MapPropertiesDelegate());
+        requisicao.header("Authorization", autorizacao);
+        try {
+            filtro.filter(requisicao);
+        } finally {
+            ContextoDePersistencia.fechar();
+        }
+        return requisicao;
+    }
+
+    private static String basic(String credenciais) {
+        return "Basic " + Base64.getEncoder().encodeToString(credenciais.getBytes(StandardCharsets.UTF_8));
+    }
+
+}
@@ -0,0 +1,114 @@
+package br.com.devmedia.webservice.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import br.com.devmedia.webservice.dao.ContextoDePersistencia;
+import br.com.devmedia.webservice.dao.JPAUtil;
+import br.com.devmedia.webservice.dao.UsuarioDAO;
+import br.com.devmedia.webservice.domain.Direcionamento;
+import br.com.devmedia.webservice.domain.Imovel;
+import br.com.devmedia.webservice.domain.Tipo;
+import br.com.devmedia.webservice.domain.Usuario;
+import br.com.devmedia.webservice.service.HashDeSenha;
+import br.com.devmedia.webservice.service.ImovelService;
+import br.com.devmedia.webservice.service.ImportacaoDeImoveis;
+
+// 1. Sobe a unidade de persistencia da aplicacao contra um H2 em memoria, sobrescrevendo as propriedades de
+//    conexao do persistence.xml por propriedades de sistema (ver JPAUtil).
+// 2. Gera usuarios e imoveis com dados deterministicos (semente fixa), para que as execucoes sejam comparaveis.
+
+final class BancoH2 {
+
+    private static final String[] TIPOS = { "Casa", "Apartamento", "Sobrado", "Cobertura", "Kitnet", "Terreno" };
+    private static final String[] BAIRROS = { "Centro", "Jardim America", "Vila Nova", "Boa Vista", "Praia Grande",
+            "Santa Cecilia", "Pinheiros", "Moema", "Lapa", "Perdizes" };
+    private static final String[] RUAS = { "Rua das Flores", "Avenida Brasil", "Rua Sete de Setembro",
+            "Avenida Paulista", "Rua da Consolacao", "Rua Augusta", "Alameda Santos", "Rua XV de Novembro" };
+
+    private static boolean iniciado;
+
+    private BancoH2() { }
+
+    static synchronized void iniciar() {
+        if (iniciado) {
+            return;
+        }
+        System.setProperty("hibernate.connection.driver_class", "org.h2.Driver");
+        System.setProperty("hibernate.connection.url", "jdbc:h2:mem:imoveis;DB_CLOSE_DELAY=-1");
+        System.setProperty("hibernate.connection.username", "sa");
+        System.setProperty("hibernate.connection.password", "");
+        System.setProperty("hibernate.connection.provider_class",
+                "org.hibernate.engine.jdbc.connections.internal.DriverManagerConnectionProviderImpl");
+        System.setProperty("hibernate.dialect", "org.hibernate.dialect.H2Dialect");
+        System.setProperty("hibernate.hbm2ddl.auto", "create");
+        System.setProperty("hibernate.show_sql", "false");
+        System.setProperty("hibernate.format_sql", "false");
+        // apenas a preparacao dos dados gera hashes; os benchmarks de autenticacao medem o caminho em cache
+        System.setProperty("imoveis.senha.iteracoes", "1000");
+
+        JPAUtil.inicializar();
+        iniciado = true;
+    }
+
+    static synchronized void encerrar() {
+        JPAUtil.fechar();
+        iniciado = false;
+    }
+
+    static Usuario criarUsuario(String username, String senha, Tipo tipo) {
+        Usuario usuario = new Usuario();
+        usuario.setNome(username);
+        usuario.setUsername(username);
+        usuario.setPassword(HashDeSenha.gerar(senha));
+        usuario.setTipo(tipo);
+        try {
+            return new UsuarioDAO().salvarUsuario(usuario);
+        } finally {
+            ContextoDePersistencia.fechar();
+        }
+    }
+
+    static void criarImoveis(Usuario dono, int quantidade, long semente) {
+        ImportacaoDeImoveis importacao = new ImovelService().iniciarImportacao(dono.getId());
+        try {
+            for (Imovel imovel : gerarImoveis(quantidade, semente)) {
+                importacao.adicionar(imovel);
+            }
+            importacao.concluir();
+        } finally {
+            ContextoDePersistencia.fechar();
+        }
+    }
+
+    static List<Imovel> gerarImoveis(int quantidade, long semente) {
+        Random random = new Random(semente);
+        List<Imovel> imoveis = new ArrayList<>(quantidade);
+        for (int i = 0; i < quantidade; i++) {
+            Imovel imovel = new Imovel();
+            imovel.setNome(TIPOS[random.nextInt(TIPOS.length)] + " " + BAIRROS[random.nextInt(BAIRROS.length)]);
+            imovel.setEndereco(RUAS[random.nextInt(RUAS.length)] + ", " + (1 + random.nextInt(2000)) + " - "
+                    + BAIRROS[random.nextInt(BAIRROS.length)]);
+            imovel.setDirecionamento(random.nextBoolean() ? Direcionamento.VENDA : Direcionamento.ALUGUEL);
+            imovel.setValor((double) (500 + random.nextInt(2_000_000)));
+            imoveis.add(imovel);
+        }
+        return imoveis;
+    }
+
+    static List<Usuario> gerarUsuarios(int quantidade) {
+        List<Usuario> usuarios = new ArrayList<>(quantidade);
+        for (int i = 0; i < quantidade; i++) {
+            Usuario usuario = new Usuario();
+            usuario.setId(i + 1);
+            usuario.setNome("Usuario " + (i + 1));
+            usuario.setUsername("usuario" + (i + 1));
+            usuario.setPassword("nao-serializada");
+            usuario.setTipo(Tipo.CLIENTE);
+            usuarios.add(usuario);
+        }
+        return usuarios;
+    }
+
+}
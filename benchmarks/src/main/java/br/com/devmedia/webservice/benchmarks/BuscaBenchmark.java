@@ -0,0 +1,120 @@
+package br.com.devmedia.webservice.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import br.com.devmedia.webservice.dao.ContextoDePersistencia;
+import br.com.devmedia.webservice.dao.FiltroImovel;
+import br.com.devmedia.webservice.dao.OrdenacaoImovel;
+import br.com.devmedia.webservice.domain.Direcionamento;
+import br.com.devmedia.webservice.domain.Imovel;
+import br.com.devmedia.webservice.domain.Tipo;
+import br.com.devmedia.webservice.domain.Usuario;
+import br.com.devmedia.webservice.indice.IndiceImoveis;
+import br.com.devmedia.webservice.service.ImovelService;
+
+// Pesquisa de /buscas para cada formato de consulta, com os imoveis no H2 e no indice textual. Mede a
+// chamada que BuscaResource.getImoveis despacha para o ExecutorDeConsultas (ImovelService.pesquisarImoveis),
+// com o mesmo filtro que o recurso monta para os parametros indicados em cada formato.
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BuscaBenchmark {
+
+    private static final int QUANTIDADE_DE_IMOVEIS = 20000;
+
+    @Param({ "nome", "nome-e-endereco", "direcionamento-e-faixa-de-valor", "nome-ordenado-por-valor",
+            "cursor", "offset" })
+    private String formato;
+
+    private final ImovelService imovelService = new ImovelService();
+
+    @Setup
+    public void preparar() throws IOException {
+        System.setProperty("imoveis.indice.diretorio", Files.createTempDirectory("imoveis-indice").toString());
+        BancoH2.iniciar();
+        IndiceImoveis.getInstancia().abrir();
+        Usuario dono = BancoH2.criarUsuario("corretor", "segredo", Tipo.CLIENTE);
+        BancoH2.criarImoveis(dono, QUANTIDADE_DE_IMOVEIS, 42);
+    }
+
+    @TearDown
+    public void encerrar() {
+        IndiceImoveis.getInstancia().fechar();
+        BancoH2.encerrar();
+    }
+
+    @Benchmark
+    public List<Imovel> pesquisar() {
+        try {
+            return imovelService.pesquisarImoveis(montarFiltro());
+        } finally {
+            ContextoDePersistencia.fechar();
+        }
+    }
+
+    private FiltroImovel montarFiltro() {
+        FiltroImovel filtro = new FiltroImovel();
+        switch (formato) {
+            case "nome":
+                // ?nome=casa
+                filtro.setNome("casa");
+                filtro.setOrdenarPorRelevancia(true);
+                break;
+            case "nome-e-endereco":
+                // ?nome=apartamento&endereco=paulista
+                filtro.setNome("apartamento");
+                filtro.setEndereco("paulista");
+                filtro.setOrdenarPorRelevancia(true);
+                break;
+            case "direcionamento-e-faixa-de-valor":
+                // ?direcionamento=venda&valorMinimo=100000&valorMaximo=300000&limit=20
+                filtro.setDirecionamento(Direcionamento.VENDA);
+                filtro.setValorMinimo(100000.0);
+                filtro.setValorMaximo(300000.0);
+                filtro.setOrdenarPorRelevancia(true);
+                filtro.setMaximoResultados(20);
+                break;
+            case "nome-ordenado-por-valor":
+                // ?nome=cobertura&ordenacao=-valor&limit=20
+                filtro.setNome("cobertura");
+                filtro.setOrdenacao(OrdenacaoImovel.VALOR_DESC);
+                filtro.setMaximoResultados(20);
+                break;
+            case "cursor":
+                // ?after=<cursor do id 10000>&limit=20
+                filtro.setAposId(10000L);
+                filtro.setMaximoResultados(20);
+                break;
+            case "offset":
+                // ?offset=10001&limit=20
+                filtro.setOrdenarPorRelevancia(true);
+                filtro.setPrimeiroResultado(10000);
+                filtro.setMaximoResultados(20);
+                break;
+            default:
+                throw new IllegalArgumentException(formato);
+        }
+        return filtro;
+    }
+
+}
@@ -0,0 +1,61 @@
+package br.com.devmedia.webservice.benchmarks;
+
+import java.nio.charset.StandardCharsets;
+import java.util.StringTokenizer;
+import java.util.concurrent.TimeUnit;
+
+import org.glassfish.jersey.internal.util.Base64;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import br.com.devmedia.webservice.domain.Usuario;
+import br.com.devmedia.webservice.resources.filter.CredenciaisBasic;
+
+// Leitura do cabecalho "Authorization: Basic": CredenciaisBasic comparado a implementacao anterior do filtro
+// (replaceFirst + Base64 do Jersey + StringTokenizer + Usuario), reproduzida em legado().
+// Rode com "-prof gc" para comparar tambem as alocacoes por operacao.
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CredenciaisBasicBenchmark {
+
+    @Param({ "admin:segredo", "corretor.responsavel@imobiliaria.com.br:uma-senha-bem-mais-longa-0123456789" })
+    private String credenciais;
+
+    private String cabecalho;
+
+    @Setup
+    public void preparar() {
+        cabecalho = "Basic " + java.util.Base64.getEncoder().encodeToString(credenciais.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Benchmark
+    public CredenciaisBasic atual() {
+        return CredenciaisBasic.doCabecalho(cabecalho);
+    }
+
+    @Benchmark
+    public Usuario legado() {
+        String dadosAutorizacao = cabecalho.replaceFirst("Basic ", "");
+        String dadosDecodificados = Base64.decodeAsString(dadosAutorizacao);
+        StringTokenizer dadosTokenizer = new StringTokenizer(dadosDecodificados, ":");
+        Usuario usuario = new Usuario();
+        usuario.setUsername(dadosTokenizer.nextToken());
+        usuario.setPassword(dadosTokenizer.nextToken());
+        return usuario;
+    }
+
+}
@@ -0,0 +1,42 @@
+package br.com.devmedia.webservice.benchmarks;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+// Executa o JMH com as opcoes da linha de comando e, se nenhum formato de resultado for informado, grava os
+// resultados em resultados/jmh-<data e hora>.json, para que execucoes diferentes possam ser comparadas.
+
+public final class ExecutarBenchmarks {
+
+    private static final DateTimeFormatter FORMATO_DATA = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private ExecutarBenchmarks() { }
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions linhaDeComando = new CommandLineOptions(args);
+        if (linhaDeComando.shouldHelp() || linhaDeComando.shouldList() || linhaDeComando.shouldListWithParams()
+                || linhaDeComando.shouldListProfilers() || linhaDeComando.shouldListResultFormats()) {
+            Main.main(args);
+            return;
+        }
+
+        ChainedOptionsBuilder opcoes = new OptionsBuilder().parent(linhaDeComando);
+        if (!linhaDeComando.getResultFormat().hasValue() && !linhaDeComando.getResult().hasValue()) {
+            Path diretorio = Files.createDirectories(Paths.get("resultados"));
+            opcoes.resultFormat(ResultFormatType.JSON)
+                    .result(diretorio.resolve("jmh-" + LocalDateTime.now().format(FORMATO_DATA) + ".json").toString());
+        }
+        new Runner(opcoes.build()).run();
+    }
+
+}
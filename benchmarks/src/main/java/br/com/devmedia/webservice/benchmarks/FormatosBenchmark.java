@@ -0,0 +1,90 @@
+package br.com.devmedia.webservice.benchmarks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import br.com.devmedia.webservice.domain.Imovel;
+
+// Custo de CPU e tamanho na rede de uma lista de Imovel em cada formato oferecido pelos recursos: JSON e Smile,
+// com e sem gzip (nivel 6, o padrao de imoveis.compressao.nivel). O tempo e medido pelo JMH; o numero de bytes
+// de cada combinacao e medido uma vez na preparacao e registrado no log, fora dos resultados do JMH.
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FormatosBenchmark {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FormatosBenchmark.class);
+
+    @Param({ "json", "json+gzip", "smile", "smile+gzip" })
+    private String formato;
+
+    @Param({ "20", "100", "1000" })
+    private int tamanho;
+
+    private ObjectWriter writer;
+    private boolean gzip;
+    private List<Imovel> imoveis;
+
+    @Setup
+    public void preparar() throws IOException {
+        ObjectMapper mapper = formato.startsWith("smile") ? new ObjectMapper(new SmileFactory()) : new ObjectMapper();
+        writer = mapper.writerFor(new TypeReference<List<Imovel>>() { });
+        gzip = formato.endsWith("+gzip");
+        imoveis = BancoH2.gerarImoveis(tamanho, 42);
+        for (int i = 0; i < imoveis.size(); i++) {
+            imoveis.get(i).setId(i + 1);
+        }
+        LOGGER.info("Bytes na rede ({}, {} imoveis): {}", formato, tamanho, serializar());
+    }
+
+    @Benchmark
+    public long serializar() throws IOException {
+        ContadorDeBytes contador = new ContadorDeBytes();
+        OutputStream saida = gzip ? new GZIPOutputStream(contador, 8192) : contador;
+        writer.writeValue(saida, imoveis);
+        saida.close();
+        return contador.total;
+    }
+
+    private static final class ContadorDeBytes extends OutputStream {
+
+        private long total;
+
+        @Override
+        public void write(int b) {
+            total++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            total += len;
+        }
+    }
+
+}
@@ -0,0 +1,121 @@
+package br.com.devmedia.webservice.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import br.com.devmedia.webservice.dao.ContextoDePersistencia;
+import br.com.devmedia.webservice.dao.ImovelDAO;
+import br.com.devmedia.webservice.domain.Imovel;
+import br.com.devmedia.webservice.domain.Tipo;
+import br.com.devmedia.webservice.domain.Usuario;
+
+// Escritas do ImovelDAO no H2: inclusao individual (POST /usuarios/{id}/imoveis), inclusao em lote
+// (POST .../imoveis/lote, tempo por imovel) e alteracao, com e sem leitura previa. O indice textual fica
+// fechado, de modo que so o custo do banco e do Hibernate e medido.
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ImovelDAOBenchmark {
+
+    private static final int TAMANHO_DO_LOTE = 50;
+    private static final int IMOVEIS_EXISTENTES = 1000;
+
+    private final ImovelDAO imovelDAO = new ImovelDAO();
+
+    private Usuario dono;
+    private long primeiroId;
+    private int proximo;
+    // versao atual de cada imovel existente, exigida por substituirImovel
+    private final long[] versoes = new long[IMOVEIS_EXISTENTES];
+
+    @Setup(Level.Trial)
+    public void preparar() {
+        BancoH2.iniciar();
+        dono = BancoH2.criarUsuario("corretor", "segredo", Tipo.CLIENTE);
+        List<Imovel> existentes = BancoH2.gerarImoveis(IMOVEIS_EXISTENTES, 7);
+        try {
+            imovelDAO.salvarImoveis(existentes, dono.getId());
+        } finally {
+            ContextoDePersistencia.fechar();
+        }
+        primeiroId = existentes.get(0).getId();
+        for (int i = 0; i < IMOVEIS_EXISTENTES; i++) {
+            versoes[i] = existentes.get(i).getVersao();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void encerrar() {
+        BancoH2.encerrar();
+    }
+
+    @Benchmark
+    public Imovel salvarImovel() {
+        try {
+            return imovelDAO.salvarImovel(BancoH2.gerarImoveis(1, proximo++).get(0), dono.getId());
+        } finally {
+            ContextoDePersistencia.fechar();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TAMANHO_DO_LOTE)
+    public List<Imovel> salvarImoveisEmLote() {
+        List<Imovel> lote = BancoH2.gerarImoveis(TAMANHO_DO_LOTE, proximo++);
+        try {
+            imovelDAO.salvarImoveis(lote, dono.getId());
+            return lote;
+        } finally {
+            ContextoDePersistencia.fechar();
+        }
+    }
+
+    // alteracao com leitura previa (PATCH, ou PUT sem versao)
+    @Benchmark
+    public Imovel atualizarImovel() {
+        Imovel alteracao = BancoH2.gerarImoveis(1, proximo).get(0);
+        long id = primeiroId + (proximo++ % IMOVEIS_EXISTENTES);
+        try {
+            return imovelDAO.atualizarImovel(id, null, imovel -> {
+                imovel.setNome(alteracao.getNome());
+                imovel.setValor(alteracao.getValor());
+            });
+        } finally {
+            ContextoDePersistencia.fechar();
+        }
+    }
+
+    // PUT com a versao conhecida: um unico UPDATE, sem leitura previa
+    @Benchmark
+    public Imovel substituirImovel() {
+        int indice = proximo++ % IMOVEIS_EXISTENTES;
+        Imovel alteracao = BancoH2.gerarImoveis(1, proximo).get(0);
+        alteracao.setId(primeiroId + indice);
+        alteracao.setVersao(versoes[indice]);
+        try {
+            versoes[indice] = imovelDAO.substituirImovel(alteracao).getVersao();
+            return alteracao;
+        } finally {
+            ContextoDePersistencia.fechar();
+        }
+    }
+
+}
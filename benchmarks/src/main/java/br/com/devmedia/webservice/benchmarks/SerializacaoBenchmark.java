@@ -0,0 +1,100 @@
+package br.com.devmedia.webservice.benchmarks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import br.com.devmedia.webservice.domain.Imovel;
+import br.com.devmedia.webservice.domain.Usuario;
+import br.com.devmedia.webservice.resources.ListagemEmFluxo;
+
+// Serializacao JSON de listas de Imovel e Usuario de tamanhos variados: a lista inteira com o Jackson (como o
+// provider JSON do Jersey faz para List<T>) e elemento a elemento com ListagemEmFluxo.
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializacaoBenchmark {
+
+    @Param({ "10", "100", "1000", "10000" })
+    private int tamanho;
+
+    private final ObjectWriter writerImoveis = new ObjectMapper().writerFor(new TypeReference<List<Imovel>>() { });
+    private final ObjectWriter writerUsuarios = new ObjectMapper().writerFor(new TypeReference<List<Usuario>>() { });
+
+    private List<Imovel> imoveis;
+    private List<Usuario> usuarios;
+
+    @Setup
+    public void preparar() {
+        imoveis = BancoH2.gerarImoveis(tamanho, 42);
+        for (int i = 0; i < imoveis.size(); i++) {
+            imoveis.get(i).setId(i + 1);
+        }
+        usuarios = BancoH2.gerarUsuarios(tamanho);
+    }
+
+    @Benchmark
+    public long imoveis() throws IOException {
+        ContadorDeBytes saida = new ContadorDeBytes();
+        writerImoveis.writeValue(saida, imoveis);
+        return saida.total;
+    }
+
+    @Benchmark
+    public long usuarios() throws IOException {
+        ContadorDeBytes saida = new ContadorDeBytes();
+        writerUsuarios.writeValue(saida, usuarios);
+        return saida.total;
+    }
+
+    @Benchmark
+    public long imoveisEmFluxo() throws IOException {
+        ContadorDeBytes saida = new ContadorDeBytes();
+        new ListagemEmFluxo<>(Imovel.class, consumidor -> imoveis.forEach(consumidor)).write(saida);
+        return saida.total;
+    }
+
+    @Benchmark
+    public long usuariosEmFluxo() throws IOException {
+        ContadorDeBytes saida = new ContadorDeBytes();
+        new ListagemEmFluxo<>(Usuario.class, consumidor -> usuarios.forEach(consumidor)).write(saida);
+        return saida.total;
+    }
+
+    private static final class ContadorDeBytes extends OutputStream {
+
+        private long total;
+
+        @Override
+        public void write(int b) {
+            total++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            total += len;
+        }
+    }
+
+}
@@ -0,0 +1,140 @@
+package br.com.devmedia.webservice;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+
+import javax.ws.rs.core.GenericType;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.ext.MessageBodyReader;
+import javax.ws.rs.ext.MessageBodyWriter;
+
+import org.glassfish.jersey.jackson.JacksonFeature;
+import org.glassfish.jersey.message.MessageBodyWorkers;
+import org.glassfish.jersey.server.ResourceConfig;
+import org.glassfish.jersey.server.ServerProperties;
+import org.glassfish.jersey.server.spi.AbstractContainerLifecycleListener;
+import org.glassfish.jersey.server.spi.Container;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import br.com.devmedia.webservice.domain.ErrorMessage;
+import br.com.devmedia.webservice.domain.Imovel;
+import br.com.devmedia.webservice.domain.Usuario;
+import br.com.devmedia.webservice.resources.AdministracaoResource;
+import br.com.devmedia.webservice.resources.AlteracaoConcorrenteMapper;
+import br.com.devmedia.webservice.resources.BuscaResource;
+import br.com.devmedia.webservice.resources.ConfiguracaoJackson;
+import br.com.devmedia.webservice.resources.EntidadeNaoEncontradaMapper;
+import br.com.devmedia.webservice.resources.EscritorSmileDeListagem;
+import br.com.devmedia.webservice.resources.MetricasResource;
+import br.com.devmedia.webservice.resources.ProvedorSmile;
+import br.com.devmedia.webservice.resources.UsuarioResource;
+import br.com.devmedia.webservice.resources.filter.AcessoRestritoFeature;
+import br.com.devmedia.webservice.resources.filter.CompressaoFeature;
+import br.com.devmedia.webservice.resources.filter.ContextoDePersistenciaFilter;
+import br.com.devmedia.webservice.resources.filter.LimiteDeRequisicoesFilter;
+import br.com.devmedia.webservice.resources.filter.MetricasFeature;
+import br.com.devmedia.webservice.resources.filter.MetricasListener;
+
+// 1. Configuracao do Jersey (web.xml e Servidor) com os recursos e provedores registrados um a um, no lugar da
+//    varredura do pacote br.com.devmedia.webservice, que abria todas as classes da aplicacao a cada subida.
+//    Um recurso ou provedor novo precisa ser incluido aqui; servicos e DAOs, em ServicosDaAplicacao.
+// 2. Sem descoberta automatica de features (META-INF/services) e sem WADL; o Jackson e registrado explicitamente.
+// 3. Terminada a subida, os leitores e escritores JSON e Smile dos tipos mais usados sao exercitados uma vez
+//    (imoveis.inicializacao.aquecer), montando os serializadores do Jackson antes da primeira requisicao, e o
+//    RelatorioDeInicializacao vai para o log.
+
+public class AplicacaoImoveis extends ResourceConfig {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AplicacaoImoveis.class);
+
+    private static final Annotation[] SEM_ANOTACOES = new Annotation[0];
+
+    public AplicacaoImoveis() {
+        // ImovelResource e sub-recurso de UsuarioResource
+        register(UsuarioResource.class);
+        register(BuscaResource.class);
+        register(AdministracaoResource.class);
+        register(MetricasResource.class);
+
+        register(AcessoRestritoFeature.class);
+        register(LimiteDeRequisicoesFilter.class);
+        register(ContextoDePersistenciaFilter.class);
+        register(MetricasFeature.class);
+        register(MetricasListener.class);
+        register(CompressaoFeature.class);
+
+        register(new ServicosDaAplicacao());
+
+        register(JacksonFeature.class);
+        register(ConfiguracaoJackson.class);
+        register(ProvedorSmile.class);
+        register(EscritorSmileDeListagem.class);
+        register(AlteracaoConcorrenteMapper.class);
+        register(EntidadeNaoEncontradaMapper.class);
+
+        property(ServerProperties.FEATURE_AUTO_DISCOVERY_DISABLE, true);
+        property(ServerProperties.METAINF_SERVICES_LOOKUP_DISABLE, true);
+        property(ServerProperties.WADL_FEATURE_DISABLE, true);
+
+        register(new AbstractContainerLifecycleListener() {
+            @Override
+            public void onStartup(Container container) {
+                RelatorioDeInicializacao relatorio = RelatorioDeInicializacao.getInstancia();
+                relatorio.concluirFase("jersey");
+                if (Boolean.parseBoolean(System.getProperty("imoveis.inicializacao.aquecer", "true"))) {
+                    aquecerSerializacao(container.getApplicationHandler().getInjectionManager()
+                            .getInstance(MessageBodyWorkers.class));
+                    relatorio.concluirFase("aquecimento da serializacao");
+                }
+                relatorio.registrar();
+            }
+        });
+    }
+
+    private static void aquecerSerializacao(MessageBodyWorkers workers) {
+        try {
+            for (MediaType tipo : new MediaType[] {
+                    MediaType.APPLICATION_JSON_TYPE, MediaType.valueOf(ProvedorSmile.APPLICATION_SMILE) }) {
+                escrever(workers, new Imovel(), Imovel.class, tipo);
+                escrever(workers, new Usuario(), Usuario.class, tipo);
+                escrever(workers, new ErrorMessage("", 0), ErrorMessage.class, tipo);
+                escrever(workers, Collections.singletonList(new Imovel()),
+                        new GenericType<List<Imovel>>() { }.getType(), tipo);
+            }
+            ler(workers, Imovel.class);
+            ler(workers, Usuario.class);
+        } catch (IOException | RuntimeException ex) {
+            // o aquecimento e so uma otimizacao: a falha aparecera (e sera tratada) na primeira requisicao
+            LOGGER.warn("Falha no aquecimento da serializacao", ex);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void escrever(MessageBodyWorkers workers, Object entidade, Type tipo, MediaType formato)
+            throws IOException {
+        Class<Object> classe = (Class<Object>) entidade.getClass();
+        MessageBodyWriter<Object> writer = workers.getMessageBodyWriter(classe, tipo, SEM_ANOTACOES, formato);
+        if (writer != null) {
+            writer.writeTo(entidade, classe, tipo, SEM_ANOTACOES, formato, new MultivaluedHashMap<>(),
+                    new ByteArrayOutputStream());
+        }
+    }
+
+    private static <T> void ler(MessageBodyWorkers workers, Class<T> classe) throws IOException {
+        MessageBodyReader<T> reader = workers.getMessageBodyReader(classe, classe, SEM_ANOTACOES,
+                MediaType.APPLICATION_JSON_TYPE);
+        if (reader != null) {
+            reader.readFrom(classe, classe, SEM_ANOTACOES, MediaType.APPLICATION_JSON_TYPE,
+                    new MultivaluedHashMap<>(), new ByteArrayInputStream("{}".getBytes(StandardCharsets.UTF_8)));
+        }
+    }
+
+}
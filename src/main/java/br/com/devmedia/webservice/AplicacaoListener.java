@@ -0,0 +1,123 @@
+package br.com.devmedia.webservice;
+
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Enumeration;
+
+import javax.persistence.NoResultException;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+
+import com.mysql.cj.jdbc.AbandonedConnectionCleanupThread;
+
+import br.com.devmedia.webservice.dao.ContextoDePersistencia;
+import br.com.devmedia.webservice.dao.FiltroImovel;
+import br.com.devmedia.webservice.dao.ImovelDAO;
+import br.com.devmedia.webservice.dao.JPAUtil;
+import br.com.devmedia.webservice.dao.MigracaoDoBanco;
+import br.com.devmedia.webservice.dao.UsuarioDAO;
+import br.com.devmedia.webservice.indice.IndiceImoveis;
+import br.com.devmedia.webservice.metricas.MedidoresDaAplicacao;
+import br.com.devmedia.webservice.metricas.RegistroDeMetricas;
+import br.com.devmedia.webservice.resources.ExecutorDeConsultas;
+import br.com.devmedia.webservice.service.ImovelService;
+import br.com.devmedia.webservice.service.VerificadorDeSenha;
+
+// 1. Inicializa os recursos compartilhados junto com o contexto da aplicacao, evitando que a primeira
+//    requisicao pague o custo de criacao da EntityManagerFactory e do pool de conexoes.
+// 2. O esquema do banco vem das migracoes (ver MigracaoDoBanco), aplicadas aqui apenas com
+//    -Dimoveis.migracao.automatica=true. Com imoveis.inicializacao.aquecer (padrao), as consultas mais
+//    frequentes sao executadas uma vez, compilando os seus planos e abrindo as conexoes do pool. O tempo de cada
+//    fase vai para o RelatorioDeInicializacao.
+// 3. Registra os medidores dos componentes compartilhados (ver GET /webapi/metrics).
+// 4. Abre o indice textual de imoveis, construindo-o a partir do banco quando estiver vazio ou em outro formato.
+// 5. No encerramento do contexto, encerra os pools de threads, fecha o indice, a EntityManagerFactory (e o
+//    pool de conexoes) e libera o driver JDBC carregado pela aplicacao.
+
+public class AplicacaoListener implements ServletContextListener {
+
+    @Override
+    public void contextInitialized(ServletContextEvent sce) {
+        RelatorioDeInicializacao relatorio = RelatorioDeInicializacao.getInstancia();
+        relatorio.iniciar();
+        if (Boolean.getBoolean("imoveis.migracao.automatica")) {
+            MigracaoDoBanco.migrar();
+            relatorio.concluirFase("migracoes");
+        }
+
+        JPAUtil.inicializar();
+        relatorio.concluirFase("jpa");
+
+        MedidoresDaAplicacao.registrar(RegistroDeMetricas.getInstancia());
+
+        IndiceImoveis indiceImoveis = IndiceImoveis.getInstancia();
+        indiceImoveis.abrir();
+        if (indiceImoveis.isDisponivel() && (indiceImoveis.isVazio() || indiceImoveis.isDesatualizado())) {
+            new ImovelService().reconstruirIndice();
+        }
+        relatorio.concluirFase("indice");
+
+        if (Boolean.parseBoolean(System.getProperty("imoveis.inicializacao.aquecer", "true"))) {
+            aquecerConsultas();
+            relatorio.concluirFase("aquecimento das consultas");
+        }
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent sce) {
+        try {
+            ExecutorDeConsultas.getInstancia().encerrar();
+            VerificadorDeSenha.getInstancia().encerrar();
+            IndiceImoveis.getInstancia().fechar();
+            JPAUtil.fechar();
+        } finally {
+            liberarDriversJdbc(sce.getServletContext());
+        }
+    }
+
+    private void aquecerConsultas() {
+        UsuarioDAO usuarioDAO = new UsuarioDAO();
+        ImovelDAO imovelDAO = new ImovelDAO();
+        FiltroImovel filtro = new FiltroImovel();
+        filtro.setMaximoResultados(1);
+        try {
+            usuarioDAO.recuperarUsuarioPorId(0);
+            usuarioDAO.recuperarVersaoDoUsuario(0);
+            imovelDAO.recuperarVersaoDoImovel(0);
+            imovelDAO.pesquisarImoveis(filtro);
+            // as duas consultas abaixo falham com NoResultException (id e username inexistentes): apenas a
+            // compilacao e a execucao interessam
+            aquecer(() -> usuarioDAO.recuperarUsuarioPorUsername(""));
+            aquecer(() -> imovelDAO.recuperarImovelPorId(0));
+        } finally {
+            ContextoDePersistencia.fechar();
+        }
+    }
+
+    private void aquecer(Runnable consulta) {
+        try {
+            consulta.run();
+        } catch (NoResultException ex) {
+            // esperado
+        }
+    }
+
+    private void liberarDriversJdbc(ServletContext servletContext) {
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        Enumeration<Driver> drivers = DriverManager.getDrivers();
+        while (drivers.hasMoreElements()) {
+            Driver driver = drivers.nextElement();
+            if (driver.getClass().getClassLoader() == classLoader) {
+                try {
+                    DriverManager.deregisterDriver(driver);
+                } catch (SQLException ex) {
+                    servletContext.log("Falha ao remover o driver JDBC " + driver, ex);
+                }
+            }
+        }
+        AbandonedConnectionCleanupThread.uncheckedShutdown();
+    }
+
+}
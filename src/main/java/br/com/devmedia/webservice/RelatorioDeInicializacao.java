@@ -0,0 +1,55 @@
+package br.com.devmedia.webservice;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+// Tempo de cada fase da subida (AplicacaoListener e Jersey), registrado no log quando o Jersey termina de subir
+// (ver AplicacaoImoveis). O tempo desde o inicio da JVM inclui a subida do servidor e o carregamento das classes.
+
+public final class RelatorioDeInicializacao {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RelatorioDeInicializacao.class);
+
+    private static final RelatorioDeInicializacao INSTANCIA = new RelatorioDeInicializacao();
+
+    private final Map<String, Long> fases = new LinkedHashMap<>();
+    private long inicio = System.nanoTime();
+    private long marca = inicio;
+
+    private RelatorioDeInicializacao() { }
+
+    public static RelatorioDeInicializacao getInstancia() {
+        return INSTANCIA;
+    }
+
+    public synchronized void iniciar() {
+        fases.clear();
+        inicio = System.nanoTime();
+        marca = inicio;
+    }
+
+    // Encerra a fase atual, que comecou no fim da anterior (ou em iniciar).
+    public synchronized void concluirFase(String fase) {
+        long agora = System.nanoTime();
+        fases.merge(fase, agora - marca, Long::sum);
+        marca = agora;
+    }
+
+    public synchronized void registrar() {
+        StringBuilder relatorio = new StringBuilder();
+        for (Map.Entry<String, Long> fase : fases.entrySet()) {
+            relatorio.append(relatorio.length() == 0 ? "" : ", ")
+                    .append(fase.getKey()).append(" = ").append(TimeUnit.NANOSECONDS.toMillis(fase.getValue()))
+                    .append(" ms");
+        }
+        LOGGER.info("Aplicacao iniciada em {} ms ({} ms desde o inicio da JVM): {}",
+                TimeUnit.NANOSECONDS.toMillis(marca - inicio), ManagementFactory.getRuntimeMXBean().getUptime(),
+                relatorio);
+    }
+
+}
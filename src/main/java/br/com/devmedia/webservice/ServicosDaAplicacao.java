@@ -0,0 +1,39 @@
+package br.com.devmedia.webservice;
+
+import javax.inject.Singleton;
+
+import org.glassfish.hk2.utilities.binding.AbstractBinder;
+
+import br.com.devmedia.webservice.dao.ImovelDAO;
+import br.com.devmedia.webservice.dao.UsuarioDAO;
+import br.com.devmedia.webservice.resources.ExecutorDeConsultas;
+import br.com.devmedia.webservice.resources.ImovelResource;
+import br.com.devmedia.webservice.service.AdministracaoService;
+import br.com.devmedia.webservice.service.ImovelService;
+import br.com.devmedia.webservice.service.UsuarioService;
+
+// 1. Servicos e DAOs sem estado (o estado compartilhado fica nos componentes com getInstancia(): caches, pools,
+//    metricas), criados uma unica vez pelo HK2 e injetados (@Inject) nos recursos e no AcessoRestritoFeature,
+//    em vez de um "new" a cada requisicao.
+// 2. O ExecutorDeConsultas, que tem estado (o pool), continua unico (getInstancia(): as metricas e o
+//    AplicacaoListener tambem o usam), mas chega aos recursos pelo HK2, como os servicos.
+// 3. Os recursos tambem sao @Singleton. ImovelResource, sub-recurso de UsuarioResource, e obtido do
+//    ResourceContext e precisa do vinculo abaixo para que a instancia seja reaproveitada.
+
+public class ServicosDaAplicacao extends AbstractBinder {
+
+    @Override
+    protected void configure() {
+        bindAsContract(UsuarioDAO.class).in(Singleton.class);
+        bindAsContract(ImovelDAO.class).in(Singleton.class);
+
+        bindAsContract(UsuarioService.class).in(Singleton.class);
+        bindAsContract(ImovelService.class).in(Singleton.class);
+        bindAsContract(AdministracaoService.class).in(Singleton.class);
+
+        bind(ExecutorDeConsultas.getInstancia()).to(ExecutorDeConsultas.class);
+
+        bindAsContract(ImovelResource.class).in(Singleton.class);
+    }
+
+}
@@ -0,0 +1,151 @@
+package br.com.devmedia.webservice;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.http2.server.HTTP2CServerConnectionFactory;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.StatisticsHandler;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.eclipse.jetty.util.BlockingArrayQueue;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.glassfish.jersey.servlet.ServletContainer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import br.com.devmedia.webservice.metricas.RegistroDeMetricas;
+
+// 1. Execucao sem servidor de aplicacao (java -jar, ver o perfil "executavel" do pom): o Jetty embutido com o
+//    mesmo ServletContainer do Jersey (configurado por AplicacaoImoveis), o mesmo AplicacaoListener e o mesmo
+//    mapeamento /webapi/* do web.xml.
+// 2. Pool de threads limitado (imoveis.servidor.threads.minimo/maximo), com fila tambem limitada
+//    (imoveis.servidor.threads.fila). Com a fila cheia a tarefa nova (requisicao, leitura ou escrita de uma
+//    conexao) e recusada: o Jetty registra a RejectedExecutionException no log e a requisicao ou conexao falha na
+//    hora, em vez de esperar. A fila deve comportar os picos esperados; as recusas sao contadas em
+//    imoveis_servidor_rejeicoes_total e indicam que o servidor esta acima da sua capacidade. Aceitadores e
+//    seletores em imoveis.servidor.aceitadores e imoveis.servidor.seletores (-1 deixa o Jetty escolher pelo numero
+//    de processadores).
+// 3. Um unico conector atende HTTP/1.1 (keep-alive, conexao ociosa fechada apos imoveis.servidor.ociosidadeMs) e
+//    HTTP/2 sem TLS (h2c, por upgrade ou conhecimento previo), que multiplexa as requisicoes de um cliente em uma
+//    conexao; imoveis.servidor.http2=false desliga o HTTP/2.
+// 4. No encerramento (SIGTERM), o conector para de aceitar conexoes e as requisicoes em andamento tem ate
+//    imoveis.servidor.encerramentoMs para terminar antes de o contexto ser destruido.
+
+public final class Servidor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(Servidor.class);
+
+    private Servidor() { }
+
+    public static void main(String[] args) throws Exception {
+        Server servidor = criar(Integer.getInteger("imoveis.servidor.porta", 8080));
+        servidor.start();
+        LOGGER.info("Servidor iniciado em {}", servidor.getURI());
+        servidor.join();
+    }
+
+    public static Server criar(int porta) {
+        PoolDoServidor threads = new PoolDoServidor(
+                Integer.getInteger("imoveis.servidor.threads.maximo", 200),
+                Integer.getInteger("imoveis.servidor.threads.minimo", 8),
+                Integer.getInteger("imoveis.servidor.threads.ociosidadeMs", 60000),
+                new BlockingArrayQueue<>(Integer.getInteger("imoveis.servidor.threads.fila", 1000)));
+        threads.setName("servidor");
+
+        Server servidor = new Server(threads);
+        servidor.addConnector(criarConector(servidor, porta));
+
+        StatisticsHandler estatisticas = new StatisticsHandler();
+        estatisticas.setHandler(criarContexto());
+        servidor.setHandler(estatisticas);
+        servidor.setStopTimeout(Long.getLong("imoveis.servidor.encerramentoMs", TimeUnit.SECONDS.toMillis(30)));
+        servidor.setStopAtShutdown(true);
+
+        registrarMedidores(threads);
+        return servidor;
+    }
+
+    private static ServerConnector criarConector(Server servidor, int porta) {
+        HttpConfiguration configuracao = new HttpConfiguration();
+        configuracao.setSendServerVersion(false);
+        configuracao.setSendXPoweredBy(false);
+        configuracao.setPersistentConnectionsEnabled(true);
+        configuracao.setOutputBufferSize(Integer.getInteger("imoveis.servidor.bufferDeSaida", 32 * 1024));
+
+        HttpConnectionFactory http11 = new HttpConnectionFactory(configuracao);
+        int aceitadores = Integer.getInteger("imoveis.servidor.aceitadores", -1);
+        int seletores = Integer.getInteger("imoveis.servidor.seletores", -1);
+        ServerConnector conector;
+        if (Boolean.parseBoolean(System.getProperty("imoveis.servidor.http2", "true"))) {
+            HTTP2CServerConnectionFactory h2c = new HTTP2CServerConnectionFactory(configuracao);
+            h2c.setMaxConcurrentStreams(Integer.getInteger("imoveis.servidor.http2.maximoDeStreams", 128));
+            conector = new ServerConnector(servidor, aceitadores, seletores, http11, h2c);
+        } else {
+            conector = new ServerConnector(servidor, aceitadores, seletores, http11);
+        }
+        conector.setPort(porta);
+        conector.setHost(System.getProperty("imoveis.servidor.endereco"));
+        conector.setIdleTimeout(Long.getLong("imoveis.servidor.ociosidadeMs", TimeUnit.SECONDS.toMillis(30)));
+        conector.setAcceptQueueSize(Integer.getInteger("imoveis.servidor.backlog", 1024));
+        return conector;
+    }
+
+    private static ServletContextHandler criarContexto() {
+        ServletContextHandler contexto = new ServletContextHandler(ServletContextHandler.NO_SESSIONS);
+        contexto.setContextPath("/");
+        contexto.addEventListener(new AplicacaoListener());
+
+        ServletHolder jersey = new ServletHolder("Servlet REST", ServletContainer.class);
+        jersey.setInitParameter("javax.ws.rs.Application", AplicacaoImoveis.class.getName());
+        jersey.setInitOrder(1);
+        jersey.setAsyncSupported(true);
+        contexto.addServlet(jersey, "/webapi/*");
+        return contexto;
+    }
+
+    private static void registrarMedidores(PoolDoServidor threads) {
+        RegistroDeMetricas registro = RegistroDeMetricas.getInstancia();
+        registro.registrarMedidor("imoveis_servidor_threads", "gauge",
+                "Threads do pool do servidor.", threads::getThreads);
+        registro.registrarMedidor("imoveis_servidor_threads_ociosas", "gauge",
+                "Threads do pool do servidor sem trabalho.", threads::getIdleThreads);
+        registro.registrarMedidor("imoveis_servidor_fila", "gauge",
+                "Tarefas (requisicoes, leituras e escritas de conexoes) aguardando uma thread do servidor.",
+                threads::getQueueSize);
+        registro.registrarMedidor("imoveis_servidor_rejeicoes_total", "counter",
+                "Tarefas recusadas pelo pool do servidor por falta de espaco na fila (imoveis.servidor.threads.fila).",
+                threads::getRejeicoes);
+    }
+
+    // Conta as tarefas recusadas pela fila cheia; as recusadas durante o encerramento nao entram na conta.
+    private static final class PoolDoServidor extends QueuedThreadPool {
+
+        private final LongAdder rejeicoes = new LongAdder();
+
+        private PoolDoServidor(int maximo, int minimo, int ociosidadeMs, BlockingArrayQueue<Runnable> fila) {
+            super(maximo, minimo, ociosidadeMs, fila);
+        }
+
+        @Override
+        public void execute(Runnable tarefa) {
+            try {
+                super.execute(tarefa);
+            } catch (RejectedExecutionException ex) {
+                if (isRunning()) {
+                    rejeicoes.increment();
+                }
+                throw ex;
+            }
+        }
+
+        private long getRejeicoes() {
+            return rejeicoes.sum();
+        }
+    }
+
+}
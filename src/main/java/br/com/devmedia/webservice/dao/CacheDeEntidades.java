@@ -0,0 +1,121 @@
+package br.com.devmedia.webservice.dao;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hibernate.stat.SecondLevelCacheStatistics;
+import org.hibernate.stat.Statistics;
+
+import br.com.devmedia.webservice.domain.EstatisticasRegiaoCache;
+import br.com.devmedia.webservice.domain.Imovel;
+import br.com.devmedia.webservice.domain.Usuario;
+
+// 1. Regioes do cache de segundo nivel e do cache de consultas do Hibernate (configuradas em ehcache.xml).
+// 2. As consultas marcadas como cacheaveis guardam apenas os ids do resultado; as entidades sao lidas da
+//    regiao da propria entidade. Alteracoes feitas pelos DAOs invalidam as regioes automaticamente.
+// 3. O estado de cada tabela usado nas ETags das listagens (EstadoDaTabela) vem de uma consulta de agregacao,
+//    guardada em memoria por imoveis.etag.estadoTtlMs (padrao 2000): as gravacoes dos DAOs o descartam na hora,
+//    e as feitas por outra instancia, por uma migracao ou diretamente no banco aparecem em no maximo esse tempo.
+
+public final class CacheDeEntidades {
+
+    public static final String REGIAO_CONSULTAS_IMOVEIS = "consultas.imoveis";
+    public static final String REGIAO_CONSULTAS_USUARIOS = "consultas.usuarios";
+
+    public static final String HINT_CACHEAVEL = "org.hibernate.cacheable";
+    public static final String HINT_REGIAO = "org.hibernate.cacheRegion";
+
+    private CacheDeEntidades() { }
+
+    // Usuario.imoveis e o lado inverso do relacionamento: o Hibernate nao atualiza a colecao em cache quando
+    // um imovel e incluido ou excluido diretamente.
+    public static void descartarImoveisDoUsuario(long usuarioId) {
+        JPAUtil.getCache().evictCollection(Usuario.class.getName() + ".imoveis", usuarioId);
+    }
+
+    public static void descartarImovel(long imovelId) {
+        JPAUtil.getCache().evict(Imovel.class, imovelId);
+    }
+
+    static final EstadoDaTabela ESTADO_DOS_IMOVEIS = new EstadoDaTabela("Imovel");
+    static final EstadoDaTabela ESTADO_DOS_USUARIOS = new EstadoDaTabela("Usuario");
+
+    public static List<EstatisticasRegiaoCache> obterEstatisticas() {
+        Statistics estatisticas = JPAUtil.getEstatisticas();
+        String[] regioes = estatisticas.getSecondLevelCacheRegionNames();
+        Arrays.sort(regioes);
+
+        List<EstatisticasRegiaoCache> resultado = new ArrayList<>(regioes.length);
+        for (String regiao : regioes) {
+            SecondLevelCacheStatistics estatisticasDaRegiao = estatisticas.getSecondLevelCacheStatistics(regiao);
+            if (estatisticasDaRegiao != null) {
+                resultado.add(new EstatisticasRegiaoCache(regiao, estatisticasDaRegiao.getHitCount(),
+                        estatisticasDaRegiao.getMissCount(), estatisticasDaRegiao.getPutCount(),
+                        estatisticasDaRegiao.getElementCountInMemory()));
+            }
+        }
+        return resultado;
+    }
+
+    // Quantidade, maior id e soma das versoes (@Version) das linhas da entidade: muda a cada inclusao, exclusao
+    // ou alteracao. A leitura guardada vale ate o TTL ou ate a proxima gravacao feita por um DAO; uma leitura que
+    // comecou antes dessa gravacao nao e guardada, mesmo que termine depois. Logo depois de uma gravacao as
+    // replicas podem nao te-la recebido; nesse intervalo a requisicao que pede o estado passa a ler do banco
+    // principal.
+    static final class EstadoDaTabela {
+
+        private static final long TTL_NANOS =
+                TimeUnit.MILLISECONDS.toNanos(Long.getLong("imoveis.etag.estadoTtlMs", 2000));
+
+        private final String jpql;
+        private final AtomicLong geracao = new AtomicLong();
+        private volatile long ultimaAlteracao = System.nanoTime();
+        private volatile Leitura leitura;
+
+        private EstadoDaTabela(String entidade) {
+            this.jpql = "select count(e), coalesce(max(e.id), 0), coalesce(sum(e.versao), 0) from " + entidade + " e";
+        }
+
+        void alterar() {
+            ultimaAlteracao = System.nanoTime();
+            geracao.incrementAndGet();
+        }
+
+        String estado() {
+            long atrasoTolerado = ReplicasDeLeitura.getInstancia().getAtrasoToleradoMs();
+            if ((atrasoTolerado > 0)
+                    && (System.nanoTime() - ultimaAlteracao < TimeUnit.MILLISECONDS.toNanos(atrasoTolerado))) {
+                ContextoDePersistencia.fixarLeiturasNoPrincipal();
+            }
+            long geracaoAtual = geracao.get();
+            Leitura atual = leitura;
+            if ((atual != null) && (atual.geracao == geracaoAtual)
+                    && (System.nanoTime() - atual.instante < TTL_NANOS)) {
+                return atual.estado;
+            }
+            long instante = System.nanoTime();
+            Object[] estado = ContextoDePersistencia.obterParaLeitura().createQuery(jpql, Object[].class)
+                    .getSingleResult();
+            atual = new Leitura(estado[0] + "." + estado[1] + "." + estado[2], geracaoAtual, instante);
+            leitura = atual;
+            return atual.estado;
+        }
+    }
+
+    private static final class Leitura {
+
+        private final String estado;
+        private final long geracao;
+        private final long instante;
+
+        private Leitura(String estado, long geracao, long instante) {
+            this.estado = estado;
+            this.geracao = geracao;
+            this.instante = instante;
+        }
+    }
+
+}
@@ -0,0 +1,153 @@
+package br.com.devmedia.webservice.dao;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.persistence.EntityManager;
+import javax.persistence.OptimisticLockException;
+import javax.persistence.RollbackException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+// 1. Mantem um unico EntityManager por requisicao (por thread), aberto apenas quando o primeiro DAO
+//    precisa dele e compartilhado por todas as chamadas seguintes (filtro de autenticacao, recurso e
+//    sub-recurso).
+// 2. O fechamento e feito pelo ContextoDePersistenciaFilter ao final da requisicao.
+// 3. Um contexto que ainda esteja aberto quando a thread inicia uma nova requisicao e um vazamento: ele e
+//    registrado no log, contabilizado e fechado. Com -Dimoveis.persistencia.rastrearVazamentos=true o log
+//    inclui a pilha de chamadas do ponto em que o contexto foi aberto.
+// 4. As leituras que toleram o atraso da replicacao (obterParaLeitura) usam um segundo EntityManager, de uma
+//    replica (ver ReplicasDeLeitura). Uma requisicao que grava, ou de um cliente que acabou de gravar, fixa
+//    todas as leituras no banco principal (fixarLeiturasNoPrincipal), enxergando as proprias alteracoes.
+
+public final class ContextoDePersistencia {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ContextoDePersistencia.class);
+
+    private static final boolean RASTREAR_ORIGEM = Boolean.getBoolean("imoveis.persistencia.rastrearVazamentos");
+
+    private static final ThreadLocal<Contexto> CONTEXTO = new ThreadLocal<>();
+    private static final ThreadLocal<Boolean> LEITURAS_NO_PRINCIPAL = new ThreadLocal<>();
+    private static final AtomicInteger contextosAbertos = new AtomicInteger();
+    private static final LongAdder vazamentos = new LongAdder();
+
+    private ContextoDePersistencia() { }
+
+    public static EntityManager obter() {
+        Contexto contexto = contexto();
+        if (contexto.entityManager == null) {
+            contexto.entityManager = JPAUtil.getEntityManager();
+        }
+        return contexto.entityManager;
+    }
+
+    // Replica de leitura ou, sem replica disponivel ou com as leituras fixadas, o EntityManager principal.
+    public static EntityManager obterParaLeitura() {
+        if (isLeiturasNoPrincipal() || !ReplicasDeLeitura.getInstancia().isConfigurada()) {
+            return obter();
+        }
+        Contexto contexto = contexto();
+        if (contexto.leitura == null) {
+            EntityManager replica = ReplicasDeLeitura.getInstancia().abrirEntityManager();
+            contexto.leitura = (replica != null) ? replica : obter();
+        }
+        return contexto.leitura;
+    }
+
+    // EntityManager avulso para leitura, fechado por quem o abriu (ver LeituraEmFluxo).
+    static EntityManager criarParaLeitura() {
+        EntityManager replica = isLeiturasNoPrincipal() ? null : ReplicasDeLeitura.getInstancia().abrirEntityManager();
+        return (replica != null) ? replica : JPAUtil.getEntityManager();
+    }
+
+    // Vale ate o fechamento do contexto da thread (fechar).
+    public static void fixarLeiturasNoPrincipal() {
+        LEITURAS_NO_PRINCIPAL.set(Boolean.TRUE);
+    }
+
+    public static boolean isLeiturasNoPrincipal() {
+        return LEITURAS_NO_PRINCIPAL.get() != null;
+    }
+
+    public static void fechar() {
+        LEITURAS_NO_PRINCIPAL.remove();
+        Contexto contexto = CONTEXTO.get();
+        if (contexto == null) {
+            return;
+        }
+        CONTEXTO.remove();
+        contextosAbertos.decrementAndGet();
+
+        try {
+            fechar(contexto.entityManager);
+        } finally {
+            if (contexto.leitura != contexto.entityManager) {
+                fechar(contexto.leitura);
+            }
+        }
+    }
+
+    public static void verificarVazamento(String requisicao) {
+        Contexto contexto = CONTEXTO.get();
+        if (contexto != null) {
+            vazamentos.increment();
+            if (contexto.origem != null) {
+                LOGGER.warn("Contexto de persistencia nao fechado encontrado antes de {}", requisicao, contexto.origem);
+            } else {
+                LOGGER.warn("Contexto de persistencia nao fechado encontrado antes de {}", requisicao);
+            }
+            fechar();
+        }
+    }
+
+    // O commit embrulha em RollbackException a falha da gravacao; a OptimisticLockException (alteracao
+    // concorrente) e devolvida como esta, para que chegue ao recurso como 409.
+    static RuntimeException causaDaFalha(RollbackException ex) {
+        return ex.getCause() instanceof OptimisticLockException ? (OptimisticLockException) ex.getCause() : ex;
+    }
+
+    public static int getContextosAbertos() {
+        return contextosAbertos.get();
+    }
+
+    public static long getVazamentos() {
+        return vazamentos.sum();
+    }
+
+    private static Contexto contexto() {
+        Contexto contexto = CONTEXTO.get();
+        if (contexto == null) {
+            contexto = new Contexto(RASTREAR_ORIGEM ? new Throwable("Contexto de persistencia aberto aqui") : null);
+            CONTEXTO.set(contexto);
+            contextosAbertos.incrementAndGet();
+        }
+        return contexto;
+    }
+
+    private static void fechar(EntityManager em) {
+        if ((em == null) || !em.isOpen()) {
+            return;
+        }
+        try {
+            if (em.getTransaction().isActive()) {
+                LOGGER.warn("Transacao ainda ativa no fechamento do contexto de persistencia; desfazendo.");
+                em.getTransaction().rollback();
+            }
+        } finally {
+            em.close();
+        }
+    }
+
+    private static final class Contexto {
+
+        private final Throwable origem;
+        private EntityManager entityManager;
+        private EntityManager leitura;
+
+        private Contexto(Throwable origem) {
+            this.origem = origem;
+        }
+    }
+
+}
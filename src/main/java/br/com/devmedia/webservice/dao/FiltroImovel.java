@@ -0,0 +1,113 @@
+package br.com.devmedia.webservice.dao;
+
+import br.com.devmedia.webservice.domain.Direcionamento;
+
+import java.util.List;
+
+// Criterios da pesquisa de imoveis. Todos sao opcionais e os informados sao combinados (AND) em uma
+// unica consulta, ja com ordenacao e paginacao (por deslocamento ou por chave).
+
+public class FiltroImovel {
+
+    private String nome;
+    private String endereco;
+    private Direcionamento direcionamento;
+    private Double valorMinimo;
+    private Double valorMaximo;
+    private OrdenacaoImovel ordenacao = OrdenacaoImovel.ID;
+    private boolean ordenarPorRelevancia;
+    private Long aposId;
+    private List<Long> ids;
+    private int primeiroResultado;
+    private int maximoResultados;
+
+    public String getNome() {
+        return nome;
+    }
+
+    public void setNome(String nome) {
+        this.nome = nome;
+    }
+
+    public String getEndereco() {
+        return endereco;
+    }
+
+    public void setEndereco(String endereco) {
+        this.endereco = endereco;
+    }
+
+    public Direcionamento getDirecionamento() {
+        return direcionamento;
+    }
+
+    public void setDirecionamento(Direcionamento direcionamento) {
+        this.direcionamento = direcionamento;
+    }
+
+    public Double getValorMinimo() {
+        return valorMinimo;
+    }
+
+    public void setValorMinimo(Double valorMinimo) {
+        this.valorMinimo = valorMinimo;
+    }
+
+    public Double getValorMaximo() {
+        return valorMaximo;
+    }
+
+    public void setValorMaximo(Double valorMaximo) {
+        this.valorMaximo = valorMaximo;
+    }
+
+    public OrdenacaoImovel getOrdenacao() {
+        return ordenacao;
+    }
+
+    public void setOrdenacao(OrdenacaoImovel ordenacao) {
+        this.ordenacao = ordenacao;
+    }
+
+    // Nas buscas textuais sem ordenacao explicita, mantem a ordem de relevancia do indice.
+    public boolean isOrdenarPorRelevancia() {
+        return ordenarPorRelevancia;
+    }
+
+    public void setOrdenarPorRelevancia(boolean ordenarPorRelevancia) {
+        this.ordenarPorRelevancia = ordenarPorRelevancia;
+    }
+
+    public Long getAposId() {
+        return aposId;
+    }
+
+    public void setAposId(Long aposId) {
+        this.aposId = aposId;
+    }
+
+    public List<Long> getIds() {
+        return ids;
+    }
+
+    public void setIds(List<Long> ids) {
+        this.ids = ids;
+    }
+
+    public int getPrimeiroResultado() {
+        return primeiroResultado;
+    }
+
+    public void setPrimeiroResultado(int primeiroResultado) {
+        this.primeiroResultado = primeiroResultado;
+    }
+
+    public int getMaximoResultados() {
+        return maximoResultados;
+    }
+
+    public void setMaximoResultados(int maximoResultados) {
+        this.maximoResultados = maximoResultados;
+    }
+
+}
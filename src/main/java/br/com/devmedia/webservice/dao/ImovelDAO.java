@@ -1,64 +1,176 @@
 package br.com.devmedia.webservice.dao;
 
-import br.com.devmedia.webservice.domain.Direcionamento;
 import br.com.devmedia.webservice.domain.Imovel;
 import br.com.devmedia.webservice.domain.Usuario;
+import br.com.devmedia.webservice.indice.IndiceImoveis;
+
+import org.hibernate.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.persistence.EntityManager;
+import javax.persistence.EntityNotFoundException;
+import javax.persistence.OptimisticLockException;
+import javax.persistence.RollbackException;
+import javax.persistence.TypedQuery;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 public class ImovelDAO {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(ImovelDAO.class);
+
+    private static final Map<Integer, String> CONSULTAS_POR_FORMATO = new ConcurrentHashMap<>();
+
+    // A lista de imoveis do usuario nao e carregada: o relacionamento e mantido pelo lado do Imovel e a
+    // colecao em cache do usuario e descartada apos a inclusao.
     public Imovel salvarImovel(Imovel imovel, long donoImovelId) {
-        EntityManager em = JPAUtil.getEntityManager();
+        EntityManager em = ContextoDePersistencia.obter();
         Usuario usuario;
 
         try {
             em.getTransaction().begin();
             usuario = em.find(Usuario.class, donoImovelId);
             imovel.setUsuario(usuario);
-            usuario.getImoveis().add(imovel);
             em.persist(imovel);
             em.getTransaction().commit();
         } finally {
-            em.close();
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            CacheDeEntidades.ESTADO_DOS_IMOVEIS.alterar();
         }
+        aposConfirmar(() -> {
+            CacheDeEntidades.descartarImoveisDoUsuario(donoImovelId);
+            IndiceImoveis.getInstancia().indexar(imovel);
+        });
         return imovel;
     }
 
-    public List<Imovel> selecionarImoveis() {
-        EntityManager em = JPAUtil.getEntityManager();
+    // Entrega os imoveis um a um, na ordem pedida, a medida que sao lidos do banco (ver LeituraEmFluxo).
+    // O usuario vem na mesma consulta para nao disparar uma consulta por imovel.
+    public int transmitirImoveis(OrdenacaoImovel ordenacao, Consumer<Imovel> consumidor) {
+        return LeituraEmFluxo.percorrer("select i from Imovel i left join fetch i.usuario order by " + ordenacao.getJpql(),
+                Imovel.class, consumidor);
+    }
 
-        return em.createQuery("select i from Imovel i", Imovel.class).getResultList();
+    // Grava todos os imoveis em uma unica transacao; com hibernate.jdbc.batch_size os INSERTs sao enviados em
+    // lote. O usuario e referenciado sem ser carregado e o contexto e limpo ao final, para que uma importacao
+    // grande nao acumule entidades gerenciadas. Uma excecao aqui significa que nada foi gravado (a importacao
+    // regrava os itens um a um, ver ImportacaoDeImoveis).
+    public void salvarImoveis(List<Imovel> imoveis, long donoImovelId) {
+        EntityManager em = ContextoDePersistencia.obter();
+
+        try {
+            em.getTransaction().begin();
+            Usuario usuario = em.getReference(Usuario.class, donoImovelId);
+            for (Imovel imovel : imoveis) {
+                imovel.setUsuario(usuario);
+                em.persist(imovel);
+            }
+            em.getTransaction().commit();
+        } finally {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            CacheDeEntidades.ESTADO_DOS_IMOVEIS.alterar();
+            em.clear();
+        }
+        aposConfirmar(() -> {
+            CacheDeEntidades.descartarImoveisDoUsuario(donoImovelId);
+            IndiceImoveis.getInstancia().indexar(imoveis);
+        });
     }
 
     public Imovel recuperarImovelPorId(long id) {
-        EntityManager em = JPAUtil.getEntityManager();
+        EntityManager em = ContextoDePersistencia.obterParaLeitura();
 
         return em.createQuery("select i from Imovel i where i.id = :imovelId", Imovel.class)
                 .setParameter("imovelId", id)
+                .setHint(CacheDeEntidades.HINT_CACHEAVEL, true)
+                .setHint(CacheDeEntidades.HINT_REGIAO, CacheDeEntidades.REGIAO_CONSULTAS_IMOVEIS)
                 .getSingleResult();
     }
 
-    public void atualizarImovel(Imovel imovel) {
-        EntityManager em = JPAUtil.getEntityManager();
+    // Consultas baratas usadas na validacao condicional (If-None-Match) antes de carregar ou serializar os
+    // imoveis. Ficam no cache de consultas, que o Hibernate invalida a cada alteracao na tabela.
+    public Long recuperarVersaoDoImovel(long id) {
+        EntityManager em = ContextoDePersistencia.obterParaLeitura();
+
+        List<Long> versoes = em.createQuery("select i.versao from Imovel i where i.id = :imovelId", Long.class)
+                .setParameter("imovelId", id)
+                .setHint(CacheDeEntidades.HINT_CACHEAVEL, true)
+                .setHint(CacheDeEntidades.HINT_REGIAO, CacheDeEntidades.REGIAO_CONSULTAS_IMOVEIS)
+                .getResultList();
+        return versoes.isEmpty() ? null : versoes.get(0);
+    }
+
+    // Muda sempre que um imovel e incluido (maior id), excluido (quantidade) ou alterado (soma das versoes).
+    public String recuperarEstadoDosImoveis() {
+        return CacheDeEntidades.ESTADO_DOS_IMOVEIS.estado();
+    }
+
+    // Substitui os campos do imovel sem le-lo antes: com a versao informada pelo cliente, o Hibernate grava o
+    // imovel recebido com um unico "update ... where id = ? and versao = ?". Nenhuma linha alterada (versao
+    // desatualizada ou imovel inexistente) resulta em OptimisticLockException. O dono nao e alterado (ver Imovel),
+    // mas o imovel recebido nao o traz: a entrada que o update grava no cache de segundo nivel, sem o dono, e
+    // descartada, para que a proxima leitura (e a exclusao, que descarta a colecao em cache do dono) venha do banco.
+    public Imovel substituirImovel(Imovel imovel) {
+        EntityManager em = ContextoDePersistencia.obter();
+
+        try {
+            em.getTransaction().begin();
+            em.unwrap(Session.class).update(imovel);
+            em.getTransaction().commit();
+        } catch (RollbackException ex) {
+            throw ContextoDePersistencia.causaDaFalha(ex);
+        } finally {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            CacheDeEntidades.ESTADO_DOS_IMOVEIS.alterar();
+            em.clear();
+            CacheDeEntidades.descartarImovel(imovel.getId());
+        }
+        aposConfirmar(() -> IndiceImoveis.getInstancia().indexar(imovel));
+        return imovel;
+    }
+
+    // Le o imovel (normalmente do cache de segundo nivel), confere a versao esperada, se houver, e aplica as
+    // alteracoes. Com @DynamicUpdate o UPDATE traz apenas as colunas alteradas, sempre com "versao = ?": uma
+    // alteracao concorrente entre a leitura e a gravacao tambem resulta em OptimisticLockException.
+    public Imovel atualizarImovel(long id, Long versaoEsperada, Consumer<Imovel> alteracoes) {
+        EntityManager em = ContextoDePersistencia.obter();
         Imovel imovelManaged;
 
         try {
             em.getTransaction().begin();
-            imovelManaged = em.find(Imovel.class, imovel.getId());
-            imovelManaged.setNome(imovel.getNome());
-            imovelManaged.setDirecionamento(imovel.getDirecionamento());
-            imovelManaged.setEndereco(imovel.getEndereco());
-            imovelManaged.setValor(imovel.getValor());
+            imovelManaged = em.find(Imovel.class, id);
+            if (imovelManaged == null) {
+                throw new EntityNotFoundException("Imovel nao encontrado.");
+            }
+            if ((versaoEsperada != null) && !versaoEsperada.equals(imovelManaged.getVersao())) {
+                throw new OptimisticLockException("Imovel alterado por outra requisicao.", null, imovelManaged);
+            }
+            alteracoes.accept(imovelManaged);
             em.getTransaction().commit();
+        } catch (RollbackException ex) {
+            throw ContextoDePersistencia.causaDaFalha(ex);
         } finally {
-            em.close();
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            CacheDeEntidades.ESTADO_DOS_IMOVEIS.alterar();
         }
+        aposConfirmar(() -> IndiceImoveis.getInstancia().indexar(imovelManaged));
+        return imovelManaged;
     }
 
     public void excluirImovel(long id) {
-        EntityManager em = JPAUtil.getEntityManager();
+        EntityManager em = ContextoDePersistencia.obter();
         Imovel imovel;
 
         try {
@@ -67,57 +179,160 @@ public class ImovelDAO {
             em.remove(imovel);
             em.getTransaction().commit();
         } finally {
-            em.close();
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            CacheDeEntidades.ESTADO_DOS_IMOVEIS.alterar();
         }
+        aposConfirmar(() -> {
+            if (imovel.getUsuario() != null) {
+                CacheDeEntidades.descartarImoveisDoUsuario(imovel.getUsuario().getId());
+            }
+            IndiceImoveis.getInstancia().remover(id);
+        });
     }
 
-    public List<Imovel> listarImoveisPorPaginacao(int offset, int limit) {
-        EntityManager em = JPAUtil.getEntityManager();
+    // Pesquisa combinando todos os criterios informados em uma unica consulta. O texto JPQL e montado uma
+    // unica vez para cada formato de filtro (combinacao de criterios + ordenacao) e reaproveitado, de modo
+    // que o Hibernate encontre o plano ja compilado em seu cache de planos de consulta.
+    public List<Imovel> pesquisarImoveis(FiltroImovel filtro) {
+        EntityManager em = ContextoDePersistencia.obterParaLeitura();
 
-        try {
-            return em.createQuery("select i from Imovel i", Imovel.class)
-                    .setFirstResult(offset - 1)
-                    .setMaxResults(limit)
-                    .getResultList();
-        } finally {
-            em.close();
+        if ((filtro.getAposId() != null) && (filtro.getOrdenacao() != OrdenacaoImovel.ID)) {
+            throw new IllegalArgumentException("A paginacao por cursor exige ordenacao por id.");
+        }
+
+        String jpql = CONSULTAS_POR_FORMATO.computeIfAbsent(formatoDoFiltro(filtro), formato -> montarConsulta(filtro));
+        TypedQuery<Imovel> query = em.createQuery(jpql, Imovel.class);
+
+        if (filtro.getNome() != null) {
+            query.setParameter("nome", "%" + filtro.getNome() + "%");
+        }
+        if (filtro.getEndereco() != null) {
+            query.setParameter("endereco", "%" + filtro.getEndereco() + "%");
+        }
+        if (filtro.getDirecionamento() != null) {
+            query.setParameter("direcionamento", filtro.getDirecionamento());
+        }
+        if (filtro.getValorMinimo() != null) {
+            query.setParameter("valorMinimo", filtro.getValorMinimo());
+        }
+        if (filtro.getValorMaximo() != null) {
+            query.setParameter("valorMaximo", filtro.getValorMaximo());
+        }
+        if (filtro.getAposId() != null) {
+            query.setParameter("aposId", filtro.getAposId());
         }
+        if (filtro.getIds() != null) {
+            query.setParameter("ids", filtro.getIds());
+        } else {
+            // resultados filtrados por ids do indice textual variam demais para valer a pena guardar
+            query.setHint(CacheDeEntidades.HINT_CACHEAVEL, true);
+            query.setHint(CacheDeEntidades.HINT_REGIAO, CacheDeEntidades.REGIAO_CONSULTAS_IMOVEIS);
+        }
+        if (filtro.getPrimeiroResultado() > 0) {
+            query.setFirstResult(filtro.getPrimeiroResultado());
+        }
+        if (filtro.getMaximoResultados() > 0) {
+            query.setMaxResults(filtro.getMaximoResultados());
+        }
+        return query.getResultList();
     }
 
-    public List<Imovel> listarImoveisPorNome(String name) {
+    // Percorre todos os imoveis em lotes ordenados pela chave primaria, com um EntityManager proprio que e
+    // limpo a cada lote, mantendo o consumo de memoria constante. Retorna o total de imoveis percorridos.
+    // Le sempre do banco principal: o indice textual nao pode ser reconstruido com o atraso de uma replica.
+    public int percorrerImoveis(int tamanhoDoLote, Consumer<List<Imovel>> consumidor) {
         EntityManager em = JPAUtil.getEntityManager();
+        int total = 0;
 
         try {
-            return em.createQuery("select i from Imovel i where i.nome like :nome", Imovel.class)
-                    .setParameter("nome", "%" + name + "%")
-                    .getResultList();
+            long ultimoId = 0;
+            List<Imovel> lote;
+            do {
+                lote = em.createQuery("select i from Imovel i where i.id > :ultimoId order by i.id", Imovel.class)
+                        .setParameter("ultimoId", ultimoId)
+                        .setMaxResults(tamanhoDoLote)
+                        .getResultList();
+                if (!lote.isEmpty()) {
+                    consumidor.accept(lote);
+                    ultimoId = lote.get(lote.size() - 1).getId();
+                    total += lote.size();
+                }
+                em.clear();
+            } while (lote.size() == tamanhoDoLote);
         } finally {
             em.close();
         }
+        return total;
     }
 
-    public List<Imovel> listarImoveisPorEndereco(String endereco) {
-        EntityManager em = JPAUtil.getEntityManager();
-
+    // Descarte de cache e atualizacao do indice textual depois do commit: uma falha neles nao desfaz a gravacao e
+    // nao deve chegar a quem chamou, que repetiria uma gravacao ja feita. O indice e corrigido pela reconstrucao
+    // (POST /admin/indice-imoveis).
+    private static void aposConfirmar(Runnable acao) {
         try {
-            return em.createQuery("select i from Imovel i where i.endereco like :endereco", Imovel.class)
-                    .setParameter("endereco",  "%" + endereco + "%")
-                    .getResultList();
-        } finally {
-            em.close();
+            acao.run();
+        } catch (RuntimeException ex) {
+            LOGGER.warn("Falha ao atualizar cache ou indice textual apos gravar imoveis", ex);
         }
     }
 
-    public List<Imovel> listarImoveisPorDirecionamento(Direcionamento direcionamento) {
-        EntityManager em = JPAUtil.getEntityManager();
+    private static int formatoDoFiltro(FiltroImovel filtro) {
+        int formato = 0;
+        if (filtro.getNome() != null) {
+            formato |= 1;
+        }
+        if (filtro.getEndereco() != null) {
+            formato |= 1 << 1;
+        }
+        if (filtro.getDirecionamento() != null) {
+            formato |= 1 << 2;
+        }
+        if (filtro.getValorMinimo() != null) {
+            formato |= 1 << 3;
+        }
+        if (filtro.getValorMaximo() != null) {
+            formato |= 1 << 4;
+        }
+        if (filtro.getAposId() != null) {
+            formato |= 1 << 5;
+        }
+        if (filtro.getIds() != null) {
+            formato |= 1 << 6;
+        }
+        return formato | (filtro.getOrdenacao().ordinal() << 8);
+    }
 
-        try {
-            return em.createQuery("select i from Imovel i where i.direcionamento = :direcionamento", Imovel.class)
-                    .setParameter("direcionamento",  direcionamento)
-                    .getResultList();
-        } finally {
-            em.close();
+    private static String montarConsulta(FiltroImovel filtro) {
+        List<String> condicoes = new ArrayList<>();
+        if (filtro.getNome() != null) {
+            condicoes.add("i.nome like :nome");
+        }
+        if (filtro.getEndereco() != null) {
+            condicoes.add("i.endereco like :endereco");
+        }
+        if (filtro.getDirecionamento() != null) {
+            condicoes.add("i.direcionamento = :direcionamento");
+        }
+        if (filtro.getValorMinimo() != null) {
+            condicoes.add("i.valor >= :valorMinimo");
+        }
+        if (filtro.getValorMaximo() != null) {
+            condicoes.add("i.valor <= :valorMaximo");
+        }
+        if (filtro.getAposId() != null) {
+            condicoes.add("i.id > :aposId");
+        }
+        if (filtro.getIds() != null) {
+            condicoes.add("i.id in :ids");
+        }
+
+        StringBuilder jpql = new StringBuilder("select i from Imovel i");
+        if (!condicoes.isEmpty()) {
+            jpql.append(" where ").append(String.join(" and ", condicoes));
         }
+        return jpql.append(" order by ").append(filtro.getOrdenacao().getJpql()).toString();
     }
 
 }
@@ -1,18 +1,128 @@
 package br.com.devmedia.webservice.dao;
 
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.management.JMX;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.Persistence;
 
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.jpa.boot.internal.ParsedPersistenceXmlDescriptor;
+import org.hibernate.jpa.boot.internal.PersistenceXmlParser;
+import org.hibernate.stat.Statistics;
+
+// 1. A EntityManagerFactory e criada uma unica vez, na inicializacao da aplicacao (ver AplicacaoListener),
+//    e fechada no encerramento do contexto, liberando o pool de conexoes.
+// 2. Propriedades de sistema iniciadas com "hibernate." ou "javax.persistence." sobrescrevem as do
+//    persistence.xml. Exemplo: -Dhibernate.hikari.maximumPoolSize=50
+// 3. As replicas de leitura (imoveis.replicas) sao abertas e fechadas junto com a unidade principal
+//    (ver ReplicasDeLeitura).
+
 public class JPAUtil {
 
-	private static EntityManagerFactory emf;
+	private static final String UNIDADE_DE_PERSISTENCIA = "imoveis";
+
+	private static volatile EntityManagerFactory emf;
+
+	public static synchronized void inicializar() {
+		if (emf == null) {
+			emf = Persistence.createEntityManagerFactory(UNIDADE_DE_PERSISTENCIA, obterPropriedades());
+			ReplicasDeLeitura.getInstancia().iniciar(obterPropriedades());
+		}
+	}
 
 	public static EntityManager getEntityManager() {
-		 if (emf == null) {
-			emf = Persistence.createEntityManagerFactory("imoveis");
-		 }
-		 return emf.createEntityManager();
+		EntityManagerFactory factory = emf;
+		if (factory == null) {
+			// uso fora do container (sem o AplicacaoListener)
+			inicializar();
+			factory = emf;
+		}
+		return factory.createEntityManager();
+	}
+
+	// Estatisticas do Hibernate (cache de segundo nivel, consultas, sessoes).
+	public static Statistics getEstatisticas() {
+		return getSessionFactory().getStatistics();
+	}
+
+	public static Cache getCache() {
+		return getSessionFactory().getCache();
 	}
-	
+
+	// Pool de conexoes (HikariCP, publicado via JMX com hibernate.hikari.registerMbeans), ou null se a unidade
+	// de persistencia usar outro provedor de conexoes.
+	public static HikariPoolMXBean getPoolDeConexoes() {
+		ConnectionProvider provider = getSessionFactory().unwrap(SessionFactoryImplementor.class)
+				.getServiceRegistry().getService(ConnectionProvider.class);
+		if ((provider == null) || !provider.isUnwrappableAs(HikariDataSource.class)) {
+			return null;
+		}
+		String nomeDoPool = provider.unwrap(HikariDataSource.class).getPoolName();
+		try {
+			ObjectName nome = new ObjectName("com.zaxxer.hikari:type=Pool (" + nomeDoPool + ")");
+			MBeanServer servidor = ManagementFactory.getPlatformMBeanServer();
+			return servidor.isRegistered(nome) ? JMX.newMXBeanProxy(servidor, nome, HikariPoolMXBean.class) : null;
+		} catch (MalformedObjectNameException ex) {
+			return null;
+		}
+	}
+
+	public static synchronized void fechar() {
+		if (emf != null) {
+			try {
+				ReplicasDeLeitura.getInstancia().fechar();
+				emf.close();
+			} finally {
+				emf = null;
+			}
+		}
+	}
+
+	private static SessionFactory getSessionFactory() {
+		EntityManagerFactory factory = emf;
+		if (factory == null) {
+			inicializar();
+			factory = emf;
+		}
+		return factory.unwrap(SessionFactory.class);
+	}
+
+	// Propriedades da unidade principal (persistence.xml com as sobrescritas de sistema), sem criar a
+	// EntityManagerFactory; usadas pelas migracoes, que rodam antes da validacao do esquema (ver MigracaoDoBanco).
+	static Map<String, Object> obterPropriedadesDaUnidade() {
+		Map<String, Object> propriedades = new HashMap<>();
+		for (ParsedPersistenceXmlDescriptor unidade : PersistenceXmlParser.locatePersistenceUnits(new HashMap<>())) {
+			if (UNIDADE_DE_PERSISTENCIA.equals(unidade.getName())) {
+				for (String nome : unidade.getProperties().stringPropertyNames()) {
+					propriedades.put(nome, unidade.getProperties().getProperty(nome));
+				}
+			}
+		}
+		propriedades.putAll(obterPropriedades());
+		return propriedades;
+	}
+
+	private static Map<String, Object> obterPropriedades() {
+		Map<String, Object> propriedades = new HashMap<>();
+		for (String nome : System.getProperties().stringPropertyNames()) {
+			if (nome.startsWith("hibernate.") || nome.startsWith("javax.persistence.")) {
+				propriedades.put(nome, System.getProperty(nome));
+			}
+		}
+		return propriedades;
+	}
+
 }
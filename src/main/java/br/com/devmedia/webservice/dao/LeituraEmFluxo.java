@@ -0,0 +1,66 @@
+package br.com.devmedia.webservice.dao;
+
+import java.util.function.Consumer;
+
+import javax.persistence.EntityManager;
+
+import org.hibernate.CacheMode;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.hibernate.dialect.MySQLDialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+
+// 1. Percorre o resultado de uma consulta com um cursor JDBC somente-avanco (ScrollableResults), entregando
+//    uma entidade por vez, sem materializar a lista inteira.
+// 2. Usa um EntityManager proprio, de uma replica de leitura quando houver (a escrita da resposta acontece
+//    depois que o contexto da requisicao ja foi fechado), e limpa o contexto de persistencia a cada lote,
+//    mantendo a memoria constante.
+// 3. O tamanho do lote (e do fetch size JDBC) e configurado pela propriedade imoveis.fluxo.tamanhoDoLote.
+//    No MySQL, sem useCursorFetch na URL (que abriria um cursor no servidor para todos os comandos da aplicacao),
+//    o driver so deixa de carregar o resultado inteiro com o fetch size Integer.MIN_VALUE: apenas este comando
+//    e lido linha a linha, e a conexao, exclusiva da leitura, fica ocupada ate o fim da listagem (limitada pelo
+//    net_write_timeout do servidor quando o cliente le devagar).
+// 4. As entidades lidas nao sao colocadas no cache de segundo nivel (CacheMode.GET), para que uma listagem
+//    completa nao expulse do cache as entradas realmente usadas.
+
+final class LeituraEmFluxo {
+
+    private static final int TAMANHO_DO_LOTE = Integer.getInteger("imoveis.fluxo.tamanhoDoLote", 500);
+
+    private LeituraEmFluxo() { }
+
+    static <T> int percorrer(String jpql, Class<T> tipo, Consumer<? super T> consumidor) {
+        EntityManager em = ContextoDePersistencia.criarParaLeitura();
+        int total = 0;
+
+        try {
+            Session session = em.unwrap(Session.class);
+            ScrollableResults resultados = session.createQuery(jpql, tipo)
+                    .setFetchSize(fetchSize(session))
+                    .setReadOnly(true)
+                    .setCacheMode(CacheMode.GET)
+                    .scroll(ScrollMode.FORWARD_ONLY);
+            try {
+                while (resultados.next()) {
+                    consumidor.accept(tipo.cast(resultados.get(0)));
+                    if (++total % TAMANHO_DO_LOTE == 0) {
+                        session.clear();
+                    }
+                }
+            } finally {
+                resultados.close();
+            }
+        } finally {
+            em.close();
+        }
+        return total;
+    }
+
+    private static int fetchSize(Session session) {
+        boolean mysql = session.getSessionFactory().unwrap(SessionFactoryImplementor.class).getJdbcServices()
+                .getDialect() instanceof MySQLDialect;
+        return mysql ? Integer.MIN_VALUE : TAMANHO_DO_LOTE;
+    }
+
+}
@@ -0,0 +1,48 @@
+package br.com.devmedia.webservice.dao;
+
+import java.util.Map;
+
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.MigrationInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+// 1. Migracoes versionadas do esquema (Flyway, scripts em db/migration), executadas antes da implantacao e fora
+//    da subida da aplicacao, que apenas valida o esquema (hibernate.hbm2ddl.auto=validate):
+//        java -cp <jar do perfil "executavel"> br.com.devmedia.webservice.dao.MigracaoDoBanco
+// 2. A conexao e a da unidade de persistencia principal: persistence.xml com as propriedades de sistema que o
+//    sobrescrevem (ver JPAUtil).
+// 3. Um banco criado pelo antigo hbm2ddl.auto=update ja esta na versao 1: na primeira execucao essa versao e
+//    registrada como base, sem ser executada, e apenas as seguintes sao aplicadas.
+// 4. Com -Dimoveis.migracao.automatica=true as migracoes rodam tambem na subida (ver AplicacaoListener), o que
+//    convem apenas em desenvolvimento.
+
+public final class MigracaoDoBanco {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MigracaoDoBanco.class);
+
+    private MigracaoDoBanco() { }
+
+    public static void main(String[] args) {
+        migrar();
+    }
+
+    // Retorna o numero de migracoes aplicadas.
+    public static int migrar() {
+        Map<String, Object> propriedades = JPAUtil.obterPropriedadesDaUnidade();
+        Flyway flyway = Flyway.configure()
+                .dataSource((String) propriedades.get("hibernate.connection.url"),
+                        (String) propriedades.get("hibernate.connection.username"),
+                        (String) propriedades.get("hibernate.connection.password"))
+                .locations("classpath:db/migration")
+                .baselineOnMigrate(true)
+                .baselineVersion("1")
+                .load();
+        int aplicadas = flyway.migrate();
+        MigrationInfo atual = flyway.info().current();
+        LOGGER.info("Migracoes aplicadas: {}; esquema na versao {}.", aplicadas,
+                (atual != null) ? atual.getVersion() : "-");
+        return aplicadas;
+    }
+
+}
@@ -0,0 +1,190 @@
+package br.com.devmedia.webservice.dao;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.proxy.ParameterSetOperation;
+
+import org.hibernate.stat.QueryStatistics;
+import org.hibernate.stat.Statistics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import br.com.devmedia.webservice.domain.EstatisticasComandoSql;
+import br.com.devmedia.webservice.domain.EstatisticasConsultaHql;
+import br.com.devmedia.webservice.metricas.HistogramaDeLatencia;
+
+// 1. Recebe cada comando executado nas conexoes do pool (ver ProvedorDeConexoesMonitorado) e acumula, por texto
+//    do SQL, execucoes, erros e tempos. Os valores ficam nos parametros "?", entao o numero de comandos
+//    distintos e pequeno; passando de imoveis.sql.maximoComandos (500), os novos sao somados em "(outros)".
+// 2. Comandos que levam imoveis.sql.lentaMs (500) ou mais sao registrados como WARN no logger
+//    br.com.devmedia.webservice.sql.lenta, junto com os parametros. O log e assincrono (ver logback.xml).
+
+public final class MonitorDeSql implements QueryExecutionListener {
+
+    private static final Logger LOGGER_LENTAS = LoggerFactory.getLogger("br.com.devmedia.webservice.sql.lenta");
+
+    private static final String OUTROS = "(outros)";
+    private static final int MAXIMO_CONJUNTOS_NO_LOG = 10;
+    private static final int MAXIMO_CARACTERES_DO_VALOR = 100;
+
+    private static final MonitorDeSql INSTANCIA = new MonitorDeSql(
+            Long.getLong("imoveis.sql.lentaMs", 500),
+            Integer.getInteger("imoveis.sql.maximoComandos", 500));
+
+    private final long limiteLentaMs;
+    private final int maximoComandos;
+    private final ConcurrentMap<String, Acumulador> comandos = new ConcurrentHashMap<>();
+
+    private MonitorDeSql(long limiteLentaMs, int maximoComandos) {
+        this.limiteLentaMs = limiteLentaMs;
+        this.maximoComandos = maximoComandos;
+    }
+
+    public static MonitorDeSql getInstancia() {
+        return INSTANCIA;
+    }
+
+    @Override
+    public void beforeQuery(ExecutionInfo execucao, List<QueryInfo> consultas) { }
+
+    @Override
+    public void afterQuery(ExecutionInfo execucao, List<QueryInfo> consultas) {
+        long tempoMs = execucao.getElapsedTime();
+        for (QueryInfo consulta : consultas) {
+            acumulador(consulta.getQuery()).registrar(tempoMs, execucao.isSuccess());
+        }
+        if (tempoMs >= limiteLentaMs && LOGGER_LENTAS.isWarnEnabled()) {
+            for (QueryInfo consulta : consultas) {
+                LOGGER_LENTAS.warn("{} ms{}: {} parametros: {}", tempoMs,
+                        execucao.isBatch() ? " (lote de " + execucao.getBatchSize() + ")" : "",
+                        consulta.getQuery(), descreverParametros(consulta.getParametersList()));
+            }
+        }
+    }
+
+    public List<EstatisticasComandoSql> obterEstatisticas() {
+        List<EstatisticasComandoSql> resultado = new ArrayList<>(comandos.size());
+        for (Map.Entry<String, Acumulador> entrada : comandos.entrySet()) {
+            resultado.add(entrada.getValue().resumir(entrada.getKey()));
+        }
+        // os que mais ocupam o banco primeiro
+        resultado.sort(Comparator.comparingLong(EstatisticasComandoSql::getTempoTotalMs).reversed());
+        return resultado;
+    }
+
+    // Estatisticas do Hibernate por consulta JPQL/HQL (inclui o numero de linhas devolvidas).
+    public List<EstatisticasConsultaHql> obterEstatisticasDasConsultas() {
+        Statistics estatisticas = JPAUtil.getEstatisticas();
+        String[] consultas = estatisticas.getQueries();
+
+        List<EstatisticasConsultaHql> resultado = new ArrayList<>(consultas.length);
+        for (String consulta : consultas) {
+            QueryStatistics estatisticasDaConsulta = estatisticas.getQueryStatistics(consulta);
+            resultado.add(new EstatisticasConsultaHql(consulta, estatisticasDaConsulta.getExecutionCount(),
+                    estatisticasDaConsulta.getExecutionRowCount(), estatisticasDaConsulta.getExecutionAvgTime(),
+                    estatisticasDaConsulta.getExecutionMaxTime()));
+        }
+        resultado.sort(Comparator.comparingLong(
+                (EstatisticasConsultaHql e) -> e.getExecucoes() * e.getTempoMedioMs()).reversed());
+        return resultado;
+    }
+
+    // As estatisticas do Hibernate so podem ser zeradas em conjunto: as do cache de segundo nivel tambem recomecam.
+    public void limpar() {
+        comandos.clear();
+        JPAUtil.getEstatisticas().clear();
+    }
+
+    private Acumulador acumulador(String sql) {
+        Acumulador acumulador = comandos.get(sql);
+        if (acumulador == null) {
+            String chave = comandos.size() < maximoComandos ? sql : OUTROS;
+            acumulador = comandos.computeIfAbsent(chave, c -> new Acumulador());
+        }
+        return acumulador;
+    }
+
+    private static String descreverParametros(List<List<ParameterSetOperation>> conjuntos) {
+        StringBuilder descricao = new StringBuilder();
+        int quantidade = Math.min(conjuntos.size(), MAXIMO_CONJUNTOS_NO_LOG);
+        for (int i = 0; i < quantidade; i++) {
+            if (i > 0) {
+                descricao.append(", ");
+            }
+            descricao.append('[');
+            List<ParameterSetOperation> operacoes = new ArrayList<>(conjuntos.get(i));
+            // o Hibernate usa parametros posicionais (setXxx(int, ...)); ordena pela posicao
+            operacoes.sort(Comparator.comparingInt(o -> o.getArgs()[0] instanceof Integer ? (Integer) o.getArgs()[0] : 0));
+            for (int j = 0; j < operacoes.size(); j++) {
+                Object[] argumentos = operacoes.get(j).getArgs();
+                if (j > 0) {
+                    descricao.append(", ");
+                }
+                descricao.append(argumentos[0]).append('=')
+                        .append(argumentos.length > 1 ? descreverValor(argumentos[1]) : "");
+            }
+            descricao.append(']');
+        }
+        if (conjuntos.size() > quantidade) {
+            descricao.append(", ... (").append(conjuntos.size()).append(" conjuntos)");
+        }
+        return descricao.toString();
+    }
+
+    private static String descreverValor(Object valor) {
+        if (!(valor instanceof String)) {
+            return String.valueOf(valor);
+        }
+        String texto = (String) valor;
+        // hashes de senha (ver HashDeSenha) nao vao para o log
+        if (texto.startsWith("pbkdf2")) {
+            return "'****'";
+        }
+        if (texto.length() > MAXIMO_CARACTERES_DO_VALOR) {
+            texto = texto.substring(0, MAXIMO_CARACTERES_DO_VALOR) + "...";
+        }
+        return "'" + texto + "'";
+    }
+
+    private static final class Acumulador {
+
+        private final LongAdder execucoes = new LongAdder();
+        private final LongAdder erros = new LongAdder();
+        private final LongAdder tempoTotalMs = new LongAdder();
+        private final LongAccumulator tempoMaximoMs = new LongAccumulator(Long::max, 0);
+        private final HistogramaDeLatencia histograma = new HistogramaDeLatencia();
+
+        void registrar(long tempoMs, boolean sucesso) {
+            execucoes.increment();
+            if (!sucesso) {
+                erros.increment();
+            }
+            tempoTotalMs.add(tempoMs);
+            tempoMaximoMs.accumulate(tempoMs);
+            histograma.registrar(TimeUnit.MILLISECONDS.toNanos(tempoMs));
+        }
+
+        EstatisticasComandoSql resumir(String comando) {
+            long quantidade = execucoes.sum();
+            long total = tempoTotalMs.sum();
+            long maximo = tempoMaximoMs.get();
+            // a interpolacao dentro da faixa pode passar do maior tempo observado
+            double p99 = Math.min(histograma.percentilSegundos(0.99) * 1000, maximo);
+            return new EstatisticasComandoSql(comando, quantidade, erros.sum(),
+                    quantidade == 0 ? 0 : (double) total / quantidade, p99, maximo, total);
+        }
+
+    }
+
+}
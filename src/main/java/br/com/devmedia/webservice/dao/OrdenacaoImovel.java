@@ -0,0 +1,35 @@
+package br.com.devmedia.webservice.dao;
+
+// Ordenacoes aceitas na pesquisa de imoveis. O id sempre entra como ultimo criterio, garantindo
+// paginas estaveis mesmo quando ha valores repetidos.
+
+public enum OrdenacaoImovel {
+
+    ID("id", "i.id"),
+    NOME("nome", "i.nome, i.id"),
+    NOME_DESC("-nome", "i.nome desc, i.id"),
+    VALOR("valor", "i.valor, i.id"),
+    VALOR_DESC("-valor", "i.valor desc, i.id");
+
+    private final String parametro;
+    private final String jpql;
+
+    OrdenacaoImovel(String parametro, String jpql) {
+        this.parametro = parametro;
+        this.jpql = jpql;
+    }
+
+    public String getJpql() {
+        return jpql;
+    }
+
+    public static OrdenacaoImovel deParametro(String parametro) {
+        for (OrdenacaoImovel ordenacao : values()) {
+            if (ordenacao.parametro.equalsIgnoreCase(parametro)) {
+                return ordenacao;
+            }
+        }
+        throw new IllegalArgumentException("Ordenacao invalida: " + parametro);
+    }
+
+}
@@ -0,0 +1,42 @@
+package br.com.devmedia.webservice.dao;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+
+import org.hibernate.hikaricp.internal.HikariCPConnectionProvider;
+
+// Pool do HikariCP (configurado pelas propriedades hibernate.hikari.*) com as conexoes envolvidas por um proxy
+// que mede cada comando SQL (ver MonitorDeSql). O Hibernate 5.2 nao mede comandos individualmente nem expoe os
+// parametros, apenas as consultas HQL (ver hibernate.generate_statistics).
+
+public class ProvedorDeConexoesMonitorado extends HikariCPConnectionProvider {
+
+    private static final long serialVersionUID = 1L;
+
+    private transient DataSource dataSourceMonitorado;
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public void configure(Map propriedades) {
+        super.configure(propriedades);
+        HikariDataSource pool = unwrap(HikariDataSource.class);
+        dataSourceMonitorado = ProxyDataSourceBuilder.create(pool)
+                .name(pool.getPoolName())
+                .listener(MonitorDeSql.getInstancia())
+                .build();
+    }
+
+    // a conexao devolvida pelo proxy repassa o close() a do pool; closeConnection(...) continua valendo
+    @Override
+    public Connection getConnection() throws SQLException {
+        return dataSourceMonitorado.getConnection();
+    }
+
+}
@@ -0,0 +1,283 @@
+package br.com.devmedia.webservice.dao;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+
+import org.hibernate.CacheMode;
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import br.com.devmedia.webservice.domain.EstadoReplica;
+
+// 1. Replicas somente-leitura do banco, listadas em imoveis.replicas (URLs JDBC separadas por virgula). Cada uma
+//    tem a sua EntityManagerFactory, criada a partir da unidade de persistencia "imoveis-leitura" com a URL da
+//    replica (usuario e senha proprios em imoveis.replicas.usuario e imoveis.replicas.senha). Sem a propriedade,
+//    todas as leituras vao para o banco principal.
+// 2. As leituras sao distribuidas em rodizio entre as replicas disponiveis. Uma verificacao periodica
+//    (imoveis.replicas.verificacaoMs) tira do rodizio a replica que nao responde ou cujo atraso na replicacao
+//    passa de imoveis.replicas.atrasoMaximoSegundos, e a devolve quando volta ao normal. Sem nenhuma replica
+//    disponivel, as leituras vao para o banco principal.
+// 3. O atraso vem de imoveis.replicas.consultaAtraso: por padrao o SHOW SLAVE STATUS do MySQL (coluna
+//    Seconds_Behind_Master); em outra consulta, a primeira coluna. Sem linhas, a replica e considerada em dia;
+//    com a propriedade vazia, apenas a conexao e verificada.
+// 4. O cache de segundo nivel e o de consultas sao os do banco principal (mesmas regioes do Ehcache), mas as
+//    sessoes das replicas apenas os consultam (CacheMode.GET), sem nunca grava-los: uma leitura atrasada que
+//    terminasse depois da invalidacao feita por uma gravacao no principal devolveria ao cache o estado anterior,
+//    servido dali em diante tambem as leituras do principal e as fixadas nele pelo cookie imoveis_escrita.
+
+public final class ReplicasDeLeitura {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReplicasDeLeitura.class);
+
+    private static final String UNIDADE_DE_PERSISTENCIA = "imoveis-leitura";
+    private static final String COLUNA_ATRASO_MYSQL = "Seconds_Behind_Master";
+    private static final int TEMPO_LIMITE_VERIFICACAO_S = 2;
+
+    private static final ReplicasDeLeitura INSTANCIA = new ReplicasDeLeitura();
+
+    private final long intervaloDeVerificacaoMs = Long.getLong("imoveis.replicas.verificacaoMs", 5000);
+    private final long atrasoMaximoSegundos = Long.getLong("imoveis.replicas.atrasoMaximoSegundos", 5);
+    private final String consultaAtraso = System.getProperty("imoveis.replicas.consultaAtraso", "SHOW SLAVE STATUS")
+            .trim();
+
+    private final AtomicInteger proxima = new AtomicInteger();
+    private final LongAdder leiturasNoPrincipal = new LongAdder();
+
+    private volatile List<Replica> replicas = Collections.emptyList();
+    private ScheduledExecutorService verificador;
+
+    private ReplicasDeLeitura() { }
+
+    public static ReplicasDeLeitura getInstancia() {
+        return INSTANCIA;
+    }
+
+    // As propriedades sao as mesmas que sobrescrevem a unidade principal (ver JPAUtil); a URL e o nome do pool
+    // sao os de cada replica. A primeira verificacao e feita aqui, antes da primeira requisicao.
+    synchronized void iniciar(Map<String, Object> propriedades) {
+        String urls = System.getProperty("imoveis.replicas", "").trim();
+        if (!replicas.isEmpty() || urls.isEmpty()) {
+            return;
+        }
+        List<Replica> configuradas = new ArrayList<>();
+        for (String url : urls.split(",")) {
+            if (!url.trim().isEmpty()) {
+                Map<String, Object> propriedadesDaReplica = new HashMap<>(propriedades);
+                String nome = UNIDADE_DE_PERSISTENCIA + "-" + (configuradas.size() + 1);
+                propriedadesDaReplica.put("hibernate.connection.url", url.trim());
+                propriedadesDaReplica.put("hibernate.hikari.poolName", nome);
+                copiarPropriedade("imoveis.replicas.usuario", "hibernate.connection.username", propriedadesDaReplica);
+                copiarPropriedade("imoveis.replicas.senha", "hibernate.connection.password", propriedadesDaReplica);
+                configuradas.add(new Replica(nome, url.trim(), propriedadesDaReplica));
+            }
+        }
+        replicas = Collections.unmodifiableList(configuradas);
+        verificar();
+
+        verificador = Executors.newSingleThreadScheduledExecutor(tarefa -> {
+            Thread thread = new Thread(tarefa, "verificador-de-replicas");
+            thread.setDaemon(true);
+            return thread;
+        });
+        verificador.scheduleWithFixedDelay(this::verificar, intervaloDeVerificacaoMs, intervaloDeVerificacaoMs,
+                TimeUnit.MILLISECONDS);
+    }
+
+    public boolean isConfigurada() {
+        return !replicas.isEmpty();
+    }
+
+    // Quanto tempo uma replica ainda no rodizio pode estar sem uma gravacao feita no principal: o atraso maximo
+    // mais o intervalo entre verificacoes. Zero sem replicas.
+    public long getAtrasoToleradoMs() {
+        return isConfigurada() ? TimeUnit.SECONDS.toMillis(atrasoMaximoSegundos) + intervaloDeVerificacaoMs : 0;
+    }
+
+    // EntityManager somente-leitura (sem verificacao de alteracoes nem flush, sem gravar no cache de segundo nivel)
+    // da proxima replica disponivel, ou null quando nao ha replicas configuradas ou nenhuma esta disponivel.
+    EntityManager abrirEntityManager() {
+        List<Replica> atuais = replicas;
+        if (atuais.isEmpty()) {
+            return null;
+        }
+        int inicio = Math.floorMod(proxima.getAndIncrement(), atuais.size());
+        for (int i = 0; i < atuais.size(); i++) {
+            Replica replica = atuais.get((inicio + i) % atuais.size());
+            EntityManagerFactory emf = replica.emf;
+            if (replica.disponivel && (emf != null)) {
+                replica.leituras.increment();
+                EntityManager em = emf.createEntityManager();
+                Session session = em.unwrap(Session.class);
+                session.setDefaultReadOnly(true);
+                session.setHibernateFlushMode(FlushMode.MANUAL);
+                session.setCacheMode(CacheMode.GET);
+                return em;
+            }
+        }
+        leiturasNoPrincipal.increment();
+        return null;
+    }
+
+    public List<EstadoReplica> obterEstado() {
+        List<EstadoReplica> estado = new ArrayList<>();
+        for (Replica replica : replicas) {
+            // a URL pode trazer credenciais nos parametros
+            String url = replica.url.split("\\?")[0];
+            estado.add(new EstadoReplica(replica.nome, url, replica.disponivel, replica.atrasoSegundos,
+                    replica.leituras.sum(), replica.ultimaFalha));
+        }
+        return estado;
+    }
+
+    public int getReplicasDisponiveis() {
+        int disponiveis = 0;
+        for (Replica replica : replicas) {
+            if (replica.disponivel) {
+                disponiveis++;
+            }
+        }
+        return disponiveis;
+    }
+
+    // Leituras que foram para o banco principal por falta de uma replica disponivel.
+    public long getLeiturasNoPrincipal() {
+        return leiturasNoPrincipal.sum();
+    }
+
+    synchronized void fechar() {
+        if (verificador != null) {
+            verificador.shutdownNow();
+            verificador = null;
+        }
+        List<Replica> anteriores = replicas;
+        replicas = Collections.emptyList();
+        for (Replica replica : anteriores) {
+            if (replica.emf != null) {
+                try {
+                    replica.emf.close();
+                } catch (RuntimeException ex) {
+                    LOGGER.warn("Falha ao fechar a replica {}", replica.nome, ex);
+                }
+            }
+        }
+    }
+
+    private synchronized void verificar() {
+        for (Replica replica : replicas) {
+            try {
+                if (replica.emf == null) {
+                    // replica fora do ar na inicializacao: a criacao e tentada de novo a cada verificacao
+                    replica.emf = Persistence.createEntityManagerFactory(UNIDADE_DE_PERSISTENCIA, replica.propriedades);
+                }
+                long atraso = medirAtraso(replica.emf);
+                replica.atrasoSegundos = atraso;
+                if (atraso > atrasoMaximoSegundos) {
+                    replica.atualizar(false, "Atraso de " + atraso + " s na replicacao.");
+                } else {
+                    replica.atualizar(true, null);
+                }
+            } catch (RuntimeException ex) {
+                Throwable causa = ex;
+                while (causa.getCause() != null) {
+                    causa = causa.getCause();
+                }
+                replica.atualizar(false, causa.toString());
+            }
+        }
+    }
+
+    private long medirAtraso(EntityManagerFactory emf) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            return em.unwrap(Session.class).doReturningWork(conexao -> {
+                if (consultaAtraso.isEmpty()) {
+                    if (!conexao.isValid(TEMPO_LIMITE_VERIFICACAO_S)) {
+                        throw new SQLException("Conexao invalida.");
+                    }
+                    return 0L;
+                }
+                try (Statement comando = conexao.createStatement()) {
+                    comando.setQueryTimeout(TEMPO_LIMITE_VERIFICACAO_S);
+                    try (ResultSet resultado = comando.executeQuery(consultaAtraso)) {
+                        if (!resultado.next()) {
+                            return 0L;
+                        }
+                        Object atraso = resultado.getObject(colunaDoAtraso(resultado.getMetaData()));
+                        if (atraso == null) {
+                            throw new SQLException("Replicacao interrompida.");
+                        }
+                        return Long.parseLong(atraso.toString());
+                    }
+                }
+            });
+        } finally {
+            em.close();
+        }
+    }
+
+    private static int colunaDoAtraso(ResultSetMetaData metadados) throws SQLException {
+        for (int coluna = 1; coluna <= metadados.getColumnCount(); coluna++) {
+            if (COLUNA_ATRASO_MYSQL.equalsIgnoreCase(metadados.getColumnLabel(coluna))) {
+                return coluna;
+            }
+        }
+        return 1;
+    }
+
+    private static void copiarPropriedade(String origem, String destino, Map<String, Object> propriedades) {
+        String valor = System.getProperty(origem);
+        if (valor != null) {
+            propriedades.put(destino, valor);
+        }
+    }
+
+    private static final class Replica {
+
+        private final String nome;
+        private final String url;
+        private final Map<String, Object> propriedades;
+        private final LongAdder leituras = new LongAdder();
+
+        private volatile EntityManagerFactory emf;
+        private volatile boolean disponivel;
+        private volatile long atrasoSegundos;
+        private volatile String ultimaFalha;
+
+        private Replica(String nome, String url, Map<String, Object> propriedades) {
+            this.nome = nome;
+            this.url = url;
+            this.propriedades = propriedades;
+        }
+
+        private void atualizar(boolean disponivel, String falha) {
+            if (disponivel && !this.disponivel) {
+                LOGGER.info("Replica {} disponivel para leituras.", nome);
+            } else if (!disponivel && (this.disponivel || (ultimaFalha == null))) {
+                LOGGER.warn("Replica {} fora do rodizio de leituras: {}", nome, falha);
+            }
+            if (falha != null) {
+                ultimaFalha = falha;
+            }
+            this.disponivel = disponivel;
+        }
+    }
+
+}
@@ -1,76 +1,163 @@
 package br.com.devmedia.webservice.dao;
 
+import br.com.devmedia.webservice.domain.Imovel;
 import br.com.devmedia.webservice.domain.Usuario;
+import br.com.devmedia.webservice.indice.IndiceImoveis;
 
 import javax.persistence.EntityManager;
+import javax.persistence.EntityNotFoundException;
+import javax.persistence.OptimisticLockException;
+import javax.persistence.RollbackException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 public class UsuarioDAO {
 
-    public Usuario recuperarUsuarioPorUsernameEPassword(String username, String password) {
-        EntityManager em = JPAUtil.getEntityManager();
+    // A autenticacao le sempre do banco principal: um usuario recem-criado ou uma senha recem-alterada valem
+    // imediatamente, independentemente do atraso das replicas.
+    public Usuario recuperarUsuarioPorUsername(String username) {
+        EntityManager em = ContextoDePersistencia.obter();
 
-        return em.createQuery("SELECT u FROM Usuario u WHERE u.username = :username AND u.password = :password", Usuario.class)
+        return em.createQuery("SELECT u FROM Usuario u WHERE u.username = :username", Usuario.class)
                 .setParameter("username", username)
-                .setParameter("password", password)
+                .setHint(CacheDeEntidades.HINT_CACHEAVEL, true)
+                .setHint(CacheDeEntidades.HINT_REGIAO, CacheDeEntidades.REGIAO_CONSULTAS_USUARIOS)
                 .getSingleResult();
     }
 
     public Usuario salvarUsuario(Usuario usuario) {
-        EntityManager em = JPAUtil.getEntityManager();
+        EntityManager em = ContextoDePersistencia.obter();
 
         try {
             em.getTransaction().begin();
             em.persist(usuario);
             em.getTransaction().commit();
         } finally {
-            em.close();
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            CacheDeEntidades.ESTADO_DOS_USUARIOS.alterar();
         }
         return usuario;
     }
 
-    public List<Usuario> selecionarUsuarios() {
-        EntityManager em = JPAUtil.getEntityManager();
-
-        return em.createQuery("select u from Usuario u", Usuario.class).getResultList();
+    // Entrega os usuarios um a um, a medida que sao lidos do banco (ver LeituraEmFluxo).
+    public int transmitirUsuarios(Consumer<Usuario> consumidor) {
+        return LeituraEmFluxo.percorrer("select u from Usuario u order by u.id", Usuario.class, consumidor);
     }
 
     public Usuario recuperarUsuarioPorId(long id) {
-        EntityManager em = JPAUtil.getEntityManager();
+        EntityManager em = ContextoDePersistencia.obterParaLeitura();
 
         return em.find(Usuario.class, id);
     }
 
-    public Usuario atualizarUsuario(Usuario usuario) {
-        EntityManager em = JPAUtil.getEntityManager();
+    // Consultas baratas usadas na validacao condicional (If-None-Match), no cache de consultas como as demais.
+    public Long recuperarVersaoDoUsuario(long id) {
+        EntityManager em = ContextoDePersistencia.obterParaLeitura();
+
+        List<Long> versoes = em.createQuery("select u.versao from Usuario u where u.id = :id", Long.class)
+                .setParameter("id", id)
+                .setHint(CacheDeEntidades.HINT_CACHEAVEL, true)
+                .setHint(CacheDeEntidades.HINT_REGIAO, CacheDeEntidades.REGIAO_CONSULTAS_USUARIOS)
+                .getResultList();
+        return versoes.isEmpty() ? null : versoes.get(0);
+    }
+
+    // Muda sempre que um usuario e incluido (maior id), excluido (quantidade) ou alterado (soma das versoes).
+    public String recuperarEstadoDosUsuarios() {
+        return CacheDeEntidades.ESTADO_DOS_USUARIOS.estado();
+    }
+
+    // Variantes que trazem os imoveis na mesma consulta (join), para quem precisa percorrer a colecao.
+    public Usuario recuperarUsuarioComImoveisPorId(long id) {
+        EntityManager em = ContextoDePersistencia.obterParaLeitura();
+
+        return em.find(Usuario.class, id, grafoComImoveis(em));
+    }
+
+    public List<Usuario> selecionarUsuariosComImoveis() {
+        EntityManager em = ContextoDePersistencia.obterParaLeitura();
+
+        return em.createQuery("select distinct u from Usuario u left join fetch u.imoveis", Usuario.class)
+                .getResultList();
+    }
+
+    // Le o usuario (normalmente do cache de segundo nivel), confere a versao esperada, se houver, e aplica as
+    // alteracoes; o UPDATE traz apenas as colunas alteradas e a condicao "versao = ?" (ver Usuario). A gravacao
+    // sem leitura previa, usada para imoveis, nao se aplica aqui: a senha nunca volta ao cliente e a colecao de
+    // imoveis (orphanRemoval) nao pode ser gravada a partir de uma copia desanexada.
+    public Usuario atualizarUsuario(long id, Long versaoEsperada, Consumer<Usuario> alteracoes) {
+        EntityManager em = ContextoDePersistencia.obter();
         Usuario usuarioManaged;
 
         try {
             em.getTransaction().begin();
-            usuarioManaged = em.find(Usuario.class, usuario.getId());
-            usuarioManaged.setNome(usuario.getNome());
-            usuarioManaged.setPassword(usuario.getPassword());
-            usuarioManaged.setTipo(usuario.getTipo());
+            usuarioManaged = em.find(Usuario.class, id);
+            if (usuarioManaged == null) {
+                throw new EntityNotFoundException("Usuario nao encontrado.");
+            }
+            if ((versaoEsperada != null) && !versaoEsperada.equals(usuarioManaged.getVersao())) {
+                throw new OptimisticLockException("Usuario alterado por outra requisicao.", null, usuarioManaged);
+            }
+            alteracoes.accept(usuarioManaged);
             em.getTransaction().commit();
-        } catch (RuntimeException ex) {
-            em.getTransaction().rollback();
+        } catch (RollbackException ex) {
+            throw ContextoDePersistencia.causaDaFalha(ex);
         } finally {
-            em.close();
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            CacheDeEntidades.ESTADO_DOS_USUARIOS.alterar();
+        }
+        return usuarioManaged;
+    }
+
+    public void atualizarSenha(long id, String password) {
+        EntityManager em = ContextoDePersistencia.obter();
+
+        try {
+            em.getTransaction().begin();
+            em.createQuery("UPDATE Usuario u SET u.password = :password WHERE u.id = :id")
+                    .setParameter("password", password)
+                    .setParameter("id", id)
+                    .executeUpdate();
+            em.getTransaction().commit();
+        } finally {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
         }
-        return usuario;
     }
 
     public void excluirUsuario(long id) {
-        EntityManager em = JPAUtil.getEntityManager();
+        EntityManager em = ContextoDePersistencia.obter();
+        List<Long> idsDosImoveis = new ArrayList<>();
 
         try {
             em.getTransaction().begin();
-            em.remove(em.getReference(Usuario.class, id));
+            // os imoveis sao removidos junto (orphanRemoval); carregados na mesma consulta do usuario
+            Usuario usuario = em.find(Usuario.class, id, grafoComImoveis(em));
+            for (Imovel imovel : usuario.getImoveis()) {
+                idsDosImoveis.add(imovel.getId());
+            }
+            em.remove(usuario);
             em.getTransaction().commit();
         } catch (RuntimeException ex) {
             em.getTransaction().rollback();
+            return;
         } finally {
-            em.close();
+            CacheDeEntidades.ESTADO_DOS_USUARIOS.alterar();
+            CacheDeEntidades.ESTADO_DOS_IMOVEIS.alterar();
         }
+        IndiceImoveis.getInstancia().remover(idsDosImoveis);
+    }
+
+    private static Map<String, Object> grafoComImoveis(EntityManager em) {
+        return Collections.<String, Object>singletonMap("javax.persistence.loadgraph",
+                em.getEntityGraph(Usuario.GRAFO_COM_IMOVEIS));
     }
 }
@@ -0,0 +1,72 @@
+package br.com.devmedia.webservice.domain;
+
+public class EstadoReplica {
+
+    private String nome;
+    private String url;
+    private boolean disponivel;
+    private long atrasoSegundos;
+    private long leituras;
+    private String ultimaFalha;
+
+    public EstadoReplica() { }
+
+    public EstadoReplica(String nome, String url, boolean disponivel, long atrasoSegundos, long leituras,
+            String ultimaFalha) {
+        this.nome = nome;
+        this.url = url;
+        this.disponivel = disponivel;
+        this.atrasoSegundos = atrasoSegundos;
+        this.leituras = leituras;
+        this.ultimaFalha = ultimaFalha;
+    }
+
+    public String getNome() {
+        return nome;
+    }
+
+    public void setNome(String nome) {
+        this.nome = nome;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public void setUrl(String url) {
+        this.url = url;
+    }
+
+    public boolean isDisponivel() {
+        return disponivel;
+    }
+
+    public void setDisponivel(boolean disponivel) {
+        this.disponivel = disponivel;
+    }
+
+    public long getAtrasoSegundos() {
+        return atrasoSegundos;
+    }
+
+    public void setAtrasoSegundos(long atrasoSegundos) {
+        this.atrasoSegundos = atrasoSegundos;
+    }
+
+    public long getLeituras() {
+        return leituras;
+    }
+
+    public void setLeituras(long leituras) {
+        this.leituras = leituras;
+    }
+
+    public String getUltimaFalha() {
+        return ultimaFalha;
+    }
+
+    public void setUltimaFalha(String ultimaFalha) {
+        this.ultimaFalha = ultimaFalha;
+    }
+
+}
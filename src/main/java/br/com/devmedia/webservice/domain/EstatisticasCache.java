@@ -0,0 +1,82 @@
+package br.com.devmedia.webservice.domain;
+
+public class EstatisticasCache {
+
+    private int tamanho;
+    private int capacidade;
+    private long acertos;
+    private long faltas;
+    private long despejos;
+    private long expiracoes;
+    private long invalidacoes;
+
+    public EstatisticasCache() { }
+
+    public EstatisticasCache(int tamanho, int capacidade, long acertos, long faltas, long despejos,
+                             long expiracoes, long invalidacoes) {
+        this.tamanho = tamanho;
+        this.capacidade = capacidade;
+        this.acertos = acertos;
+        this.faltas = faltas;
+        this.despejos = despejos;
+        this.expiracoes = expiracoes;
+        this.invalidacoes = invalidacoes;
+    }
+
+    public int getTamanho() {
+        return tamanho;
+    }
+
+    public void setTamanho(int tamanho) {
+        this.tamanho = tamanho;
+    }
+
+    public int getCapacidade() {
+        return capacidade;
+    }
+
+    public void setCapacidade(int capacidade) {
+        this.capacidade = capacidade;
+    }
+
+    public long getAcertos() {
+        return acertos;
+    }
+
+    public void setAcertos(long acertos) {
+        this.acertos = acertos;
+    }
+
+    public long getFaltas() {
+        return faltas;
+    }
+
+    public void setFaltas(long faltas) {
+        this.faltas = faltas;
+    }
+
+    public long getDespejos() {
+        return despejos;
+    }
+
+    public void setDespejos(long despejos) {
+        this.despejos = despejos;
+    }
+
+    public long getExpiracoes() {
+        return expiracoes;
+    }
+
+    public void setExpiracoes(long expiracoes) {
+        this.expiracoes = expiracoes;
+    }
+
+    public long getInvalidacoes() {
+        return invalidacoes;
+    }
+
+    public void setInvalidacoes(long invalidacoes) {
+        this.invalidacoes = invalidacoes;
+    }
+
+}
@@ -0,0 +1,83 @@
+package br.com.devmedia.webservice.domain;
+
+// Tempos de um comando SQL medidos na conexao JDBC (ver MonitorDeSql); o p99 e estimado pelo histograma.
+
+public class EstatisticasComandoSql {
+
+    private String comando;
+    private long execucoes;
+    private long erros;
+    private double tempoMedioMs;
+    private double tempoP99Ms;
+    private long tempoMaximoMs;
+    private long tempoTotalMs;
+
+    public EstatisticasComandoSql() { }
+
+    public EstatisticasComandoSql(String comando, long execucoes, long erros, double tempoMedioMs, double tempoP99Ms, long tempoMaximoMs, long tempoTotalMs) {
+        this.comando = comando;
+        this.execucoes = execucoes;
+        this.erros = erros;
+        this.tempoMedioMs = tempoMedioMs;
+        this.tempoP99Ms = tempoP99Ms;
+        this.tempoMaximoMs = tempoMaximoMs;
+        this.tempoTotalMs = tempoTotalMs;
+    }
+
+    public String getComando() {
+        return comando;
+    }
+
+    public void setComando(String comando) {
+        this.comando = comando;
+    }
+
+    public long getExecucoes() {
+        return execucoes;
+    }
+
+    public void setExecucoes(long execucoes) {
+        this.execucoes = execucoes;
+    }
+
+    public long getErros() {
+        return erros;
+    }
+
+    public void setErros(long erros) {
+        this.erros = erros;
+    }
+
+    public double getTempoMedioMs() {
+        return tempoMedioMs;
+    }
+
+    public void setTempoMedioMs(double tempoMedioMs) {
+        this.tempoMedioMs = tempoMedioMs;
+    }
+
+    public double getTempoP99Ms() {
+        return tempoP99Ms;
+    }
+
+    public void setTempoP99Ms(double tempoP99Ms) {
+        this.tempoP99Ms = tempoP99Ms;
+    }
+
+    public long getTempoMaximoMs() {
+        return tempoMaximoMs;
+    }
+
+    public void setTempoMaximoMs(long tempoMaximoMs) {
+        this.tempoMaximoMs = tempoMaximoMs;
+    }
+
+    public long getTempoTotalMs() {
+        return tempoTotalMs;
+    }
+
+    public void setTempoTotalMs(long tempoTotalMs) {
+        this.tempoTotalMs = tempoTotalMs;
+    }
+
+}
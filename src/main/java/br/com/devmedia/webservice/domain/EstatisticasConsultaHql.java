@@ -0,0 +1,63 @@
+package br.com.devmedia.webservice.domain;
+
+// Estatisticas do Hibernate para uma consulta JPQL/HQL.
+
+public class EstatisticasConsultaHql {
+
+    private String consulta;
+    private long execucoes;
+    private long linhas;
+    private long tempoMedioMs;
+    private long tempoMaximoMs;
+
+    public EstatisticasConsultaHql() { }
+
+    public EstatisticasConsultaHql(String consulta, long execucoes, long linhas, long tempoMedioMs, long tempoMaximoMs) {
+        this.consulta = consulta;
+        this.execucoes = execucoes;
+        this.linhas = linhas;
+        this.tempoMedioMs = tempoMedioMs;
+        this.tempoMaximoMs = tempoMaximoMs;
+    }
+
+    public String getConsulta() {
+        return consulta;
+    }
+
+    public void setConsulta(String consulta) {
+        this.consulta = consulta;
+    }
+
+    public long getExecucoes() {
+        return execucoes;
+    }
+
+    public void setExecucoes(long execucoes) {
+        this.execucoes = execucoes;
+    }
+
+    public long getLinhas() {
+        return linhas;
+    }
+
+    public void setLinhas(long linhas) {
+        this.linhas = linhas;
+    }
+
+    public long getTempoMedioMs() {
+        return tempoMedioMs;
+    }
+
+    public void setTempoMedioMs(long tempoMedioMs) {
+        this.tempoMedioMs = tempoMedioMs;
+    }
+
+    public long getTempoMaximoMs() {
+        return tempoMaximoMs;
+    }
+
+    public void setTempoMaximoMs(long tempoMaximoMs) {
+        this.tempoMaximoMs = tempoMaximoMs;
+    }
+
+}
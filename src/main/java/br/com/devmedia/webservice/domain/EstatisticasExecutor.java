@@ -0,0 +1,82 @@
+package br.com.devmedia.webservice.domain;
+
+public class EstatisticasExecutor {
+
+    private int threads;
+    private int threadsAtivas;
+    private int tamanhoDaFila;
+    private int capacidadeDaFila;
+    private long concluidas;
+    private long rejeitadas;
+    private long expiradas;
+
+    public EstatisticasExecutor() { }
+
+    public EstatisticasExecutor(int threads, int threadsAtivas, int tamanhoDaFila, int capacidadeDaFila,
+            long concluidas, long rejeitadas, long expiradas) {
+        this.threads = threads;
+        this.threadsAtivas = threadsAtivas;
+        this.tamanhoDaFila = tamanhoDaFila;
+        this.capacidadeDaFila = capacidadeDaFila;
+        this.concluidas = concluidas;
+        this.rejeitadas = rejeitadas;
+        this.expiradas = expiradas;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public int getThreadsAtivas() {
+        return threadsAtivas;
+    }
+
+    public void setThreadsAtivas(int threadsAtivas) {
+        this.threadsAtivas = threadsAtivas;
+    }
+
+    public int getTamanhoDaFila() {
+        return tamanhoDaFila;
+    }
+
+    public void setTamanhoDaFila(int tamanhoDaFila) {
+        this.tamanhoDaFila = tamanhoDaFila;
+    }
+
+    public int getCapacidadeDaFila() {
+        return capacidadeDaFila;
+    }
+
+    public void setCapacidadeDaFila(int capacidadeDaFila) {
+        this.capacidadeDaFila = capacidadeDaFila;
+    }
+
+    public long getConcluidas() {
+        return concluidas;
+    }
+
+    public void setConcluidas(long concluidas) {
+        this.concluidas = concluidas;
+    }
+
+    public long getRejeitadas() {
+        return rejeitadas;
+    }
+
+    public void setRejeitadas(long rejeitadas) {
+        this.rejeitadas = rejeitadas;
+    }
+
+    public long getExpiradas() {
+        return expiradas;
+    }
+
+    public void setExpiradas(long expiradas) {
+        this.expiradas = expiradas;
+    }
+
+}
@@ -0,0 +1,61 @@
+package br.com.devmedia.webservice.domain;
+
+public class EstatisticasRegiaoCache {
+
+    private String regiao;
+    private long acertos;
+    private long faltas;
+    private long insercoes;
+    private long elementosEmMemoria;
+
+    public EstatisticasRegiaoCache() { }
+
+    public EstatisticasRegiaoCache(String regiao, long acertos, long faltas, long insercoes, long elementosEmMemoria) {
+        this.regiao = regiao;
+        this.acertos = acertos;
+        this.faltas = faltas;
+        this.insercoes = insercoes;
+        this.elementosEmMemoria = elementosEmMemoria;
+    }
+
+    public String getRegiao() {
+        return regiao;
+    }
+
+    public void setRegiao(String regiao) {
+        this.regiao = regiao;
+    }
+
+    public long getAcertos() {
+        return acertos;
+    }
+
+    public void setAcertos(long acertos) {
+        this.acertos = acertos;
+    }
+
+    public long getFaltas() {
+        return faltas;
+    }
+
+    public void setFaltas(long faltas) {
+        this.faltas = faltas;
+    }
+
+    public long getInsercoes() {
+        return insercoes;
+    }
+
+    public void setInsercoes(long insercoes) {
+        this.insercoes = insercoes;
+    }
+
+    public long getElementosEmMemoria() {
+        return elementosEmMemoria;
+    }
+
+    public void setElementosEmMemoria(long elementosEmMemoria) {
+        this.elementosEmMemoria = elementosEmMemoria;
+    }
+
+}
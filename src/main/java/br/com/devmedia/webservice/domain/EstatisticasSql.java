@@ -0,0 +1,33 @@
+package br.com.devmedia.webservice.domain;
+
+import java.util.List;
+
+public class EstatisticasSql {
+
+    private List<EstatisticasComandoSql> comandos;
+    private List<EstatisticasConsultaHql> consultas;
+
+    public EstatisticasSql() { }
+
+    public EstatisticasSql(List<EstatisticasComandoSql> comandos, List<EstatisticasConsultaHql> consultas) {
+        this.comandos = comandos;
+        this.consultas = consultas;
+    }
+
+    public List<EstatisticasComandoSql> getComandos() {
+        return comandos;
+    }
+
+    public void setComandos(List<EstatisticasComandoSql> comandos) {
+        this.comandos = comandos;
+    }
+
+    public List<EstatisticasConsultaHql> getConsultas() {
+        return consultas;
+    }
+
+    public void setConsultas(List<EstatisticasConsultaHql> consultas) {
+        this.consultas = consultas;
+    }
+
+}
@@ -0,0 +1,31 @@
+package br.com.devmedia.webservice.domain;
+
+public class FalhaImportacao {
+
+    private int indice;
+    private String mensagem;
+
+    public FalhaImportacao() { }
+
+    public FalhaImportacao(int indice, String mensagem) {
+        this.indice = indice;
+        this.mensagem = mensagem;
+    }
+
+    public int getIndice() {
+        return indice;
+    }
+
+    public void setIndice(int indice) {
+        this.indice = indice;
+    }
+
+    public String getMensagem() {
+        return mensagem;
+    }
+
+    public void setMensagem(String mensagem) {
+        this.mensagem = mensagem;
+    }
+
+}
@@ -2,13 +2,27 @@ package br.com.devmedia.webservice.domain;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.DynamicUpdate;
+
 import javax.persistence.*;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@DynamicUpdate
 public class Imovel {
 
+    public static final String TABELA_GERADOR_IDS = "gerador_ids";
+    public static final int IDS_POR_ALOCACAO = 50;
+
+    // ids reservados em blocos (e nao por auto-incremento), o que permite ao Hibernate agrupar os INSERTs
+    // em lotes JDBC; ver ImovelDAO.salvarImoveis
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @TableGenerator(name = "imovel_id", table = TABELA_GERADOR_IDS, pkColumnName = "entidade",
+            valueColumnName = "proximo_valor", pkColumnValue = "Imovel", allocationSize = IDS_POR_ALOCACAO)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "imovel_id")
     private long id;
 
     private String nome;
@@ -19,7 +33,15 @@ public class Imovel {
 
     private Double valor;
 
+    // incrementada pelo Hibernate a cada atualizacao; base das ETags das respostas (ver RespostaCondicional) e
+    // da verificacao de alteracoes concorrentes (ver ImovelDAO.substituirImovel)
+    @Version
+    @Column(nullable = false)
+    private Long versao;
+
+    // o dono e definido apenas na inclusao; assim um imovel recebido no PUT pode ser gravado sem ele
     @ManyToOne
+    @JoinColumn(updatable = false)
     @JsonIgnore
     private Usuario usuario;
 
@@ -63,6 +85,14 @@ public class Imovel {
         this.valor = valor;
     }
 
+    public Long getVersao() {
+        return versao;
+    }
+
+    public void setVersao(Long versao) {
+        this.versao = versao;
+    }
+
     public Usuario getUsuario() {
         return usuario;
     }
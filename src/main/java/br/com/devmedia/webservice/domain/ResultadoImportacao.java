@@ -0,0 +1,36 @@
+package br.com.devmedia.webservice.domain;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ResultadoImportacao {
+
+    private int recebidos;
+    private int importados;
+    private List<FalhaImportacao> falhas = new ArrayList<>();
+
+    public int getRecebidos() {
+        return recebidos;
+    }
+
+    public void setRecebidos(int recebidos) {
+        this.recebidos = recebidos;
+    }
+
+    public int getImportados() {
+        return importados;
+    }
+
+    public void setImportados(int importados) {
+        this.importados = importados;
+    }
+
+    public List<FalhaImportacao> getFalhas() {
+        return falhas;
+    }
+
+    public void setFalhas(List<FalhaImportacao> falhas) {
+        this.falhas = falhas;
+    }
+
+}
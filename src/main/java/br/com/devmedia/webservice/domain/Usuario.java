@@ -1,28 +1,50 @@
 package br.com.devmedia.webservice.domain;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.DynamicUpdate;
 
 import javax.persistence.*;
 import java.util.List;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@DynamicUpdate
+@Table(indexes = @Index(name = "uk_usuario_username", columnList = "username", unique = true))
+@NamedEntityGraph(name = Usuario.GRAFO_COM_IMOVEIS, attributeNodes = @NamedAttributeNode("imoveis"))
 public class Usuario {
 
+    public static final String GRAFO_COM_IMOVEIS = "Usuario.comImoveis";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private long id;
 
     private String nome;
     private String username;
+
+    // armazenada como hash (ver HashDeSenha) e nunca devolvida nas respostas
+    @JsonProperty(access = JsonProperty.Access.WRITE_ONLY)
     private String password;
 
+    // carregada sob demanda; quem precisa dos imoveis usa as consultas "ComImoveis" do UsuarioDAO
     @JsonIgnore
-    @OneToMany(mappedBy = "usuario", orphanRemoval = true, fetch = FetchType.EAGER)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+    @OneToMany(mappedBy = "usuario", orphanRemoval = true)
     private List<Imovel> imoveis;
 
     @Enumerated(EnumType.STRING)
     private Tipo tipo;
 
+    // incrementada pelo Hibernate a cada atualizacao; base das ETags das respostas (ver RespostaCondicional)
+    @Version
+    @Column(nullable = false)
+    private Long versao;
+
     public long getId() {
         return id;
     }
@@ -71,13 +93,20 @@ public class Usuario {
         this.tipo = tipo;
     }
 
+    public Long getVersao() {
+        return versao;
+    }
+
+    public void setVersao(Long versao) {
+        this.versao = versao;
+    }
+
     @Override
     public String toString() {
         return "Usuario{" +
                 "id=" + id +
                 ", nome='" + nome + '\'' +
                 ", username='" + username + '\'' +
-                ", password='" + password + '\'' +
                 ", tipo=" + tipo +
                 '}';
     }
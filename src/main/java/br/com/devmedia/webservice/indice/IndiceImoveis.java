@@ -0,0 +1,418 @@
+package br.com.devmedia.webservice.indice;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.br.BrazilianAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.DoubleDocValuesField;
+import org.apache.lucene.document.DoublePoint;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.AlreadyClosedException;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.QueryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import br.com.devmedia.webservice.dao.FiltroImovel;
+import br.com.devmedia.webservice.dao.OrdenacaoImovel;
+import br.com.devmedia.webservice.domain.Imovel;
+
+// 1. Indice invertido (Lucene, em disco local) dos campos nome e endereco dos imoveis, usado pelas buscas
+//    textuais no lugar do "like '%termo%'", que obriga o banco a percorrer a tabela inteira.
+// 2. O indice e atualizado a cada inclusao, alteracao e exclusao feita pelo ImovelDAO e pode ser
+//    reconstruido a partir do banco (POST /admin/indice-imoveis).
+// 3. O diretorio e configurado pela propriedade de sistema imoveis.indice.diretorio.
+// 4. Se o indice nao puder ser aberto, as buscas textuais voltam a ser feitas no banco de dados.
+// 5. Os demais criterios da busca (direcionamento, faixa de valor, cursor), a ordenacao e a paginacao tambem sao
+//    aplicados aqui, sobre todos os documentos: o banco recebe apenas os ids da pagina pedida. O nome e ordenado
+//    sem acentos nem diferenca de maiusculas, como na colacao do MySQL.
+// 6. As alteracoes ficam visiveis as buscas logo apos cada gravacao (leitor "near real-time" do SearcherManager),
+//    sem um commit por gravacao; o commit em disco e feito a cada imoveis.indice.commitMs. Apos uma queda do
+//    processo, as gravacoes nao confirmadas no indice sao recuperadas reconstruindo-o.
+// 7. Um indice gravado com outro FORMATO (ex.: sem os campos do item 5) e considerado desatualizado e
+//    reconstruido na inicializacao (ver AplicacaoListener).
+
+public class IndiceImoveis {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(IndiceImoveis.class);
+
+    private static final IndiceImoveis INSTANCIA = new IndiceImoveis();
+
+    private static final String FORMATO = "2";
+    private static final String CHAVE_FORMATO = "formato";
+
+    private static final String CAMPO_ID = "id";
+    private static final String CAMPO_ID_NUMERICO = "id_numerico";
+    private static final String CAMPO_NOME = "nome";
+    private static final String CAMPO_NOME_ORDENACAO = "nome_ordenacao";
+    private static final String CAMPO_ENDERECO = "endereco";
+    private static final String CAMPO_DIRECIONAMENTO = "direcionamento";
+    private static final String CAMPO_VALOR = "valor";
+
+    private static final long INTERVALO_DE_COMMIT_MS = Long.getLong("imoveis.indice.commitMs", 5000);
+
+    private final Analyzer analyzer = new BrazilianAnalyzer();
+    // gravacoes incrementais em paralelo (o IndexWriter e thread-safe); a reconstrucao, sozinha
+    private final ReadWriteLock gravacao = new ReentrantReadWriteLock();
+
+    private volatile IndexWriter writer;
+    private volatile SearcherManager searcherManager;
+    private Directory diretorio;
+    private ScheduledExecutorService confirmador;
+
+    public static IndiceImoveis getInstancia() {
+        return INSTANCIA;
+    }
+
+    public synchronized void abrir() {
+        if (writer != null) {
+            return;
+        }
+        Path caminho = Paths.get(System.getProperty("imoveis.indice.diretorio",
+                Paths.get(System.getProperty("java.io.tmpdir"), "imoveis-indice").toString()));
+        try {
+            diretorio = FSDirectory.open(caminho);
+            IndexWriterConfig configuracao = new IndexWriterConfig(analyzer)
+                    .setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
+            writer = new IndexWriter(diretorio, configuracao);
+            searcherManager = new SearcherManager(writer, null);
+            confirmador = Executors.newSingleThreadScheduledExecutor(tarefa -> {
+                Thread thread = new Thread(tarefa, "commit-do-indice");
+                thread.setDaemon(true);
+                return thread;
+            });
+            confirmador.scheduleWithFixedDelay(this::confirmarPeriodicamente, INTERVALO_DE_COMMIT_MS,
+                    INTERVALO_DE_COMMIT_MS, TimeUnit.MILLISECONDS);
+            LOGGER.info("Indice de imoveis aberto em {} ({} documentos)", caminho, writer.getDocStats().numDocs);
+        } catch (IOException ex) {
+            LOGGER.error("Nao foi possivel abrir o indice de imoveis em {}; buscas textuais usarao o banco", caminho, ex);
+            fechar();
+        }
+    }
+
+    public boolean isDisponivel() {
+        return writer != null;
+    }
+
+    public boolean isVazio() {
+        return writer == null || writer.getDocStats().numDocs == 0;
+    }
+
+    // Indice com documentos gravados em outro formato, que precisa ser reconstruido.
+    public boolean isDesatualizado() {
+        IndexWriter indexWriter = writer;
+        if ((indexWriter == null) || isVazio()) {
+            return false;
+        }
+        Iterable<Map.Entry<String, String>> dados = indexWriter.getLiveCommitData();
+        if (dados != null) {
+            for (Map.Entry<String, String> dado : dados) {
+                if (CHAVE_FORMATO.equals(dado.getKey())) {
+                    return !FORMATO.equals(dado.getValue());
+                }
+            }
+        }
+        return true;
+    }
+
+    public void indexar(Imovel imovel) {
+        indexar(Collections.singletonList(imovel));
+    }
+
+    public void indexar(Collection<Imovel> imoveis) {
+        gravacao.readLock().lock();
+        try {
+            IndexWriter indexWriter = writer;
+            if (indexWriter == null) {
+                return;
+            }
+            for (Imovel imovel : imoveis) {
+                indexWriter.updateDocument(new Term(CAMPO_ID, String.valueOf(imovel.getId())), criarDocumento(imovel));
+            }
+            searcherManager.maybeRefresh();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        } finally {
+            gravacao.readLock().unlock();
+        }
+    }
+
+    public void remover(Collection<Long> ids) {
+        gravacao.readLock().lock();
+        try {
+            IndexWriter indexWriter = writer;
+            if ((indexWriter == null) || ids.isEmpty()) {
+                return;
+            }
+            Term[] termos = new Term[ids.size()];
+            int i = 0;
+            for (Long id : ids) {
+                termos[i++] = new Term(CAMPO_ID, String.valueOf(id));
+            }
+            indexWriter.deleteDocuments(termos);
+            searcherManager.maybeRefresh();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        } finally {
+            gravacao.readLock().unlock();
+        }
+    }
+
+    public void remover(long id) {
+        remover(Collections.singletonList(id));
+    }
+
+    // Descarta o conteudo atual e indexa novamente todos os imoveis fornecidos pela fonte (em lotes).
+    // As atualizacoes incrementais aguardam o termino da reconstrucao.
+    public synchronized int reconstruir(Consumer<Consumer<List<Imovel>>> fonte) {
+        gravacao.writeLock().lock();
+        try {
+            return reconstruir(fonte, writer);
+        } finally {
+            gravacao.writeLock().unlock();
+        }
+    }
+
+    private int reconstruir(Consumer<Consumer<List<Imovel>>> fonte, IndexWriter indexWriter) {
+        if (indexWriter == null) {
+            throw new IllegalStateException("Indice de imoveis indisponivel.");
+        }
+        AtomicInteger total = new AtomicInteger();
+        try {
+            indexWriter.deleteAll();
+            fonte.accept(lote -> {
+                try {
+                    for (Imovel imovel : lote) {
+                        indexWriter.addDocument(criarDocumento(imovel));
+                    }
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+                total.addAndGet(lote.size());
+            });
+            confirmar(indexWriter);
+        } catch (IOException | RuntimeException ex) {
+            try {
+                indexWriter.rollback();
+            } catch (IOException erroNoRollback) {
+                ex.addSuppressed(erroNoRollback);
+            }
+            fechar();
+            abrir();
+            throw ex instanceof IOException ? new UncheckedIOException((IOException) ex) : (RuntimeException) ex;
+        }
+        LOGGER.info("Indice de imoveis reconstruido com {} documentos", total.get());
+        return total.get();
+    }
+
+    // Retorna os ids da pagina pedida pelo filtro (primeiroResultado/maximoResultados; sem maximo, todos), entre
+    // os imoveis que atendem a todos os criterios, na ordem de relevancia (isOrdenarPorRelevancia, sem cursor)
+    // ou na ordenacao do filtro. Retorna null quando os termos nao geram consulta (ex.: apenas palavras
+    // irrelevantes como "de", "a") ou quando o indice esta fechado (ex.: durante uma reconstrucao que falhou):
+    // a busca e entao feita no banco.
+    public List<Long> pesquisar(FiltroImovel filtro) {
+        BooleanQuery.Builder consulta = new BooleanQuery.Builder();
+        QueryBuilder construtor = new QueryBuilder(analyzer);
+        if (!adicionarCriterio(consulta, construtor, CAMPO_NOME, filtro.getNome())
+                || !adicionarCriterio(consulta, construtor, CAMPO_ENDERECO, filtro.getEndereco())) {
+            return null;
+        }
+        adicionarFiltros(consulta, filtro);
+        Query query = consulta.build();
+
+        SearcherManager manager = searcherManager;
+        if (manager == null) {
+            return null;
+        }
+        try {
+            IndexSearcher searcher = manager.acquire();
+            try {
+                int quantidade = (filtro.getMaximoResultados() > 0)
+                        ? filtro.getPrimeiroResultado() + filtro.getMaximoResultados() : searcher.count(query);
+                if (quantidade <= 0) {
+                    return Collections.emptyList();
+                }
+                TopDocs encontrados = searcher.search(query, quantidade, ordenacao(filtro));
+                ScoreDoc[] documentos = encontrados.scoreDocs;
+                List<Long> ids = new ArrayList<>(Math.max(documentos.length - filtro.getPrimeiroResultado(), 0));
+                for (int i = filtro.getPrimeiroResultado(); i < documentos.length; i++) {
+                    ids.add(Long.valueOf(searcher.doc(documentos[i].doc).get(CAMPO_ID)));
+                }
+                return ids;
+            } finally {
+                manager.release(searcher);
+            }
+        } catch (AlreadyClosedException ex) {
+            // fechado entre a leitura do campo e o acquire()
+            return null;
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    public synchronized void fechar() {
+        if (confirmador != null) {
+            confirmador.shutdownNow();
+            confirmador = null;
+        }
+        try {
+            // o IndexWriter confirma as gravacoes pendentes ao ser fechado
+            if (searcherManager != null) {
+                searcherManager.close();
+            }
+            if (writer != null) {
+                writer.close();
+            }
+            if (diretorio != null) {
+                diretorio.close();
+            }
+        } catch (IOException ex) {
+            LOGGER.warn("Falha ao fechar o indice de imoveis", ex);
+        } finally {
+            searcherManager = null;
+            writer = null;
+            diretorio = null;
+        }
+    }
+
+    private boolean adicionarCriterio(BooleanQuery.Builder consulta, QueryBuilder construtor, String campo, String texto) {
+        if (texto == null) {
+            return true;
+        }
+        Query query = construtor.createBooleanQuery(campo, texto, BooleanClause.Occur.MUST);
+        if (query == null) {
+            return false;
+        }
+        consulta.add(query, BooleanClause.Occur.MUST);
+        return true;
+    }
+
+    private static void adicionarFiltros(BooleanQuery.Builder consulta, FiltroImovel filtro) {
+        if (filtro.getDirecionamento() != null) {
+            consulta.add(new TermQuery(new Term(CAMPO_DIRECIONAMENTO, filtro.getDirecionamento().name())),
+                    BooleanClause.Occur.FILTER);
+        }
+        if ((filtro.getValorMinimo() != null) || (filtro.getValorMaximo() != null)) {
+            double minimo = (filtro.getValorMinimo() != null) ? filtro.getValorMinimo() : Double.NEGATIVE_INFINITY;
+            double maximo = (filtro.getValorMaximo() != null) ? filtro.getValorMaximo() : Double.POSITIVE_INFINITY;
+            consulta.add(DoublePoint.newRangeQuery(CAMPO_VALOR, minimo, maximo), BooleanClause.Occur.FILTER);
+        }
+        if (filtro.getAposId() != null) {
+            consulta.add(LongPoint.newRangeQuery(CAMPO_ID_NUMERICO, filtro.getAposId() + 1, Long.MAX_VALUE),
+                    BooleanClause.Occur.FILTER);
+        }
+    }
+
+    // As mesmas ordenacoes de OrdenacaoImovel, com o id como ultimo criterio e os valores ausentes primeiro
+    // (como os nulos no MySQL).
+    private static Sort ordenacao(FiltroImovel filtro) {
+        SortField porId = new SortField(CAMPO_ID_NUMERICO, SortField.Type.LONG);
+        if (filtro.isOrdenarPorRelevancia() && (filtro.getAposId() == null)) {
+            return new Sort(SortField.FIELD_SCORE, porId);
+        }
+        SortField campo;
+        switch (filtro.getOrdenacao()) {
+            case NOME:
+            case NOME_DESC:
+                campo = new SortField(CAMPO_NOME_ORDENACAO, SortField.Type.STRING,
+                        filtro.getOrdenacao() == OrdenacaoImovel.NOME_DESC);
+                campo.setMissingValue(SortField.STRING_FIRST);
+                break;
+            case VALOR:
+            case VALOR_DESC:
+                campo = new SortField(CAMPO_VALOR, SortField.Type.DOUBLE,
+                        filtro.getOrdenacao() == OrdenacaoImovel.VALOR_DESC);
+                campo.setMissingValue(Double.NEGATIVE_INFINITY);
+                break;
+            default:
+                return new Sort(porId);
+        }
+        return new Sort(campo, porId);
+    }
+
+    private void confirmar(IndexWriter indexWriter) throws IOException {
+        indexWriter.setLiveCommitData(Collections.singletonMap(CHAVE_FORMATO, FORMATO).entrySet());
+        indexWriter.commit();
+        searcherManager.maybeRefresh();
+    }
+
+    private void confirmarPeriodicamente() {
+        gravacao.readLock().lock();
+        try {
+            IndexWriter indexWriter = writer;
+            if ((indexWriter != null) && indexWriter.hasUncommittedChanges()) {
+                indexWriter.commit();
+            }
+        } catch (IOException | RuntimeException ex) {
+            LOGGER.warn("Falha no commit periodico do indice de imoveis", ex);
+        } finally {
+            gravacao.readLock().unlock();
+        }
+    }
+
+    private Document criarDocumento(Imovel imovel) {
+        Document documento = new Document();
+        documento.add(new StringField(CAMPO_ID, String.valueOf(imovel.getId()), Field.Store.YES));
+        documento.add(new LongPoint(CAMPO_ID_NUMERICO, imovel.getId()));
+        documento.add(new NumericDocValuesField(CAMPO_ID_NUMERICO, imovel.getId()));
+        if (imovel.getNome() != null) {
+            documento.add(new TextField(CAMPO_NOME, imovel.getNome(), Field.Store.NO));
+            documento.add(new SortedDocValuesField(CAMPO_NOME_ORDENACAO,
+                    new BytesRef(chaveDeOrdenacao(imovel.getNome()))));
+        }
+        if (imovel.getEndereco() != null) {
+            documento.add(new TextField(CAMPO_ENDERECO, imovel.getEndereco(), Field.Store.NO));
+        }
+        if (imovel.getDirecionamento() != null) {
+            documento.add(new StringField(CAMPO_DIRECIONAMENTO, imovel.getDirecionamento().name(), Field.Store.NO));
+        }
+        if (imovel.getValor() != null) {
+            documento.add(new DoublePoint(CAMPO_VALOR, imovel.getValor()));
+            documento.add(new DoubleDocValuesField(CAMPO_VALOR, imovel.getValor()));
+        }
+        return documento;
+    }
+
+    private static String chaveDeOrdenacao(String nome) {
+        return Normalizer.normalize(nome, Normalizer.Form.NFD).replaceAll("\\p{M}", "").toLowerCase(Locale.ROOT);
+    }
+
+}
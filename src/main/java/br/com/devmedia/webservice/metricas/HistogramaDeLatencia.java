@@ -0,0 +1,80 @@
+package br.com.devmedia.webservice.metricas;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Histograma de latencias com faixas fixas (em escala aproximadamente logaritmica, de 1 ms a 10 s), no formato
+// cumulativo do Prometheus. O registro de uma medida e uma busca binaria nos limites e dois incrementos de
+// LongAdder: nao bloqueia nem aloca, mesmo com muitas threads registrando ao mesmo tempo.
+
+public final class HistogramaDeLatencia {
+
+    static final double[] LIMITES_SEGUNDOS = { 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10 };
+
+    private static final long[] LIMITES_NANOS = new long[LIMITES_SEGUNDOS.length];
+    static {
+        for (int i = 0; i < LIMITES_SEGUNDOS.length; i++) {
+            LIMITES_NANOS[i] = (long) (LIMITES_SEGUNDOS[i] * TimeUnit.SECONDS.toNanos(1));
+        }
+    }
+
+    // a ultima faixa e a dos valores acima do maior limite (+Inf)
+    private final LongAdder[] faixas = new LongAdder[LIMITES_NANOS.length + 1];
+    private final LongAdder somaNanos = new LongAdder();
+
+    public HistogramaDeLatencia() {
+        for (int i = 0; i < faixas.length; i++) {
+            faixas[i] = new LongAdder();
+        }
+    }
+
+    public void registrar(long nanos) {
+        int inicio = 0;
+        int fim = LIMITES_NANOS.length;
+        while (inicio < fim) {
+            int meio = (inicio + fim) >>> 1;
+            if (LIMITES_NANOS[meio] < nanos) {
+                inicio = meio + 1;
+            } else {
+                fim = meio;
+            }
+        }
+        faixas[inicio].increment();
+        somaNanos.add(nanos);
+    }
+
+    // Quantidades acumuladas por limite (a ultima posicao e o total).
+    long[] obterAcumulados() {
+        long[] acumulados = new long[faixas.length];
+        long total = 0;
+        for (int i = 0; i < faixas.length; i++) {
+            total += faixas[i].sum();
+            acumulados[i] = total;
+        }
+        return acumulados;
+    }
+
+    double obterSomaSegundos() {
+        return somaNanos.sum() / (double) TimeUnit.SECONDS.toNanos(1);
+    }
+
+    // Estimativa do percentil (0 < quantil <= 1), interpolada linearmente dentro da faixa em que cai; acima do
+    // maior limite devolve o proprio limite. Sem medidas devolve 0.
+    public double percentilSegundos(double quantil) {
+        long[] acumulados = obterAcumulados();
+        long total = acumulados[acumulados.length - 1];
+        if (total == 0) {
+            return 0;
+        }
+        double alvo = quantil * total;
+        for (int i = 0; i < LIMITES_SEGUNDOS.length; i++) {
+            if (acumulados[i] >= alvo) {
+                double inferior = i == 0 ? 0 : LIMITES_SEGUNDOS[i - 1];
+                long anteriores = i == 0 ? 0 : acumulados[i - 1];
+                return inferior + (LIMITES_SEGUNDOS[i] - inferior) * (alvo - anteriores) / (acumulados[i] - anteriores);
+            }
+        }
+        return LIMITES_SEGUNDOS[LIMITES_SEGUNDOS.length - 1];
+    }
+
+}
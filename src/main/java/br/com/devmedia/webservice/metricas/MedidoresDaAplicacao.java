@@ -0,0 +1,117 @@
+package br.com.devmedia.webservice.metricas;
+
+import java.util.function.ToDoubleFunction;
+
+import com.zaxxer.hikari.HikariPoolMXBean;
+
+import br.com.devmedia.webservice.dao.JPAUtil;
+import br.com.devmedia.webservice.dao.ReplicasDeLeitura;
+import br.com.devmedia.webservice.domain.EstatisticasCache;
+import br.com.devmedia.webservice.domain.EstatisticasExecutor;
+import br.com.devmedia.webservice.resources.ExecutorDeConsultas;
+import br.com.devmedia.webservice.resources.filter.LimitadorDeRequisicoes;
+import br.com.devmedia.webservice.service.CacheDeAutenticacao;
+import br.com.devmedia.webservice.service.VerificadorDeSenha;
+
+// Medidores dos componentes compartilhados, lidos a cada exportacao (ver RegistroDeMetricas).
+
+public final class MedidoresDaAplicacao {
+
+    private MedidoresDaAplicacao() { }
+
+    public static void registrar(RegistroDeMetricas registro) {
+        registrarCacheDeAutenticacao(registro);
+        registrarPoolDeConexoes(registro);
+        registrarExecutorDeConsultas(registro);
+        registrarLimitadorDeRequisicoes(registro);
+
+        ReplicasDeLeitura replicas = ReplicasDeLeitura.getInstancia();
+        registro.registrarMedidor("imoveis_replicas_disponiveis", "gauge",
+                "Replicas de leitura no rodizio.", replicas::getReplicasDisponiveis);
+        registro.registrarMedidor("imoveis_replicas_leituras_no_principal_total", "counter",
+                "Leituras enviadas ao banco principal por falta de replica disponivel.",
+                replicas::getLeiturasNoPrincipal);
+
+        VerificadorDeSenha verificador = VerificadorDeSenha.getInstancia();
+        registro.registrarMedidor("imoveis_verificador_senha_fila", "gauge",
+                "Verificacoes de senha aguardando uma thread.", verificador::getTamanhoDaFila);
+        registro.registrarMedidor("imoveis_verificador_senha_em_andamento", "gauge",
+                "Verificacoes de senha em execucao.", verificador::getVerificacoesEmAndamento);
+    }
+
+    private static void registrarCacheDeAutenticacao(RegistroDeMetricas registro) {
+        CacheDeAutenticacao cache = CacheDeAutenticacao.getInstancia();
+        cache(registro, cache, "imoveis_cache_autenticacao_entradas", "gauge",
+                "Credenciais no cache de autenticacao.", EstatisticasCache::getTamanho);
+        cache(registro, cache, "imoveis_cache_autenticacao_acertos_total", "counter",
+                "Autenticacoes resolvidas pelo cache.", EstatisticasCache::getAcertos);
+        cache(registro, cache, "imoveis_cache_autenticacao_faltas_total", "counter",
+                "Autenticacoes que precisaram consultar o banco.", EstatisticasCache::getFaltas);
+        cache(registro, cache, "imoveis_cache_autenticacao_despejos_total", "counter",
+                "Credenciais descartadas por falta de espaco.", EstatisticasCache::getDespejos);
+    }
+
+    private static void cache(RegistroDeMetricas registro, CacheDeAutenticacao cache, String nome, String tipo,
+            String descricao, ToDoubleFunction<EstatisticasCache> valor) {
+        registro.registrarMedidor(nome, tipo, descricao, () -> valor.applyAsDouble(cache.obterEstatisticas()));
+    }
+
+    private static void registrarPoolDeConexoes(RegistroDeMetricas registro) {
+        pool(registro, "imoveis_pool_conexoes_ativas", "Conexoes em uso.",
+                HikariPoolMXBean::getActiveConnections);
+        pool(registro, "imoveis_pool_conexoes_ociosas", "Conexoes livres no pool.",
+                HikariPoolMXBean::getIdleConnections);
+        pool(registro, "imoveis_pool_conexoes_total", "Conexoes abertas pelo pool.",
+                HikariPoolMXBean::getTotalConnections);
+        pool(registro, "imoveis_pool_conexoes_aguardando", "Threads aguardando uma conexao livre.",
+                HikariPoolMXBean::getThreadsAwaitingConnection);
+    }
+
+    private static void pool(RegistroDeMetricas registro, String nome, String descricao,
+            ToDoubleFunction<HikariPoolMXBean> valor) {
+        registro.registrarMedidor(nome, "gauge", descricao, () -> {
+            HikariPoolMXBean pool = JPAUtil.getPoolDeConexoes();
+            return pool != null ? valor.applyAsDouble(pool) : Double.NaN;
+        });
+    }
+
+    private static void registrarLimitadorDeRequisicoes(RegistroDeMetricas registro) {
+        LimitadorDeRequisicoes limitador = LimitadorDeRequisicoes.getInstancia();
+        registro.registrarMedidor("imoveis_limite_chaves", "gauge",
+                "Chaves (enderecos, usuarios, metodos) acompanhadas pelo limitador de requisicoes.",
+                limitador::getChaves);
+        registro.registrarMedidor("imoveis_limite_chaves_nao_rastreadas_total", "counter",
+                "Requisicoes que seguiram sem limite por falta de espaco para a chave (imoveis.limite.maximoChaves).",
+                limitador::getChavesNaoRastreadas);
+        registro.registrarMedidor("imoveis_limite_endereco_rejeitadas_total", "counter",
+                "Requisicoes recusadas (429) pelo limite por endereco do cliente.",
+                () -> limitador.getRejeicoes(LimitadorDeRequisicoes.Motivo.ENDERECO));
+        registro.registrarMedidor("imoveis_limite_usuario_rejeitadas_total", "counter",
+                "Requisicoes recusadas (429) pelo limite do tipo de usuario.",
+                () -> limitador.getRejeicoes(LimitadorDeRequisicoes.Motivo.USUARIO));
+        registro.registrarMedidor("imoveis_limite_metodo_rejeitadas_total", "counter",
+                "Requisicoes recusadas (429) pelo limite proprio do metodo.",
+                () -> limitador.getRejeicoes(LimitadorDeRequisicoes.Motivo.METODO));
+        registro.registrarMedidor("imoveis_limite_falhas_bloqueadas_total", "counter",
+                "Tentativas de autenticacao recusadas (429) apos repetidas credenciais invalidas.",
+                () -> limitador.getRejeicoes(LimitadorDeRequisicoes.Motivo.FALHAS));
+    }
+
+    private static void registrarExecutorDeConsultas(RegistroDeMetricas registro) {
+        ExecutorDeConsultas executor = ExecutorDeConsultas.getInstancia();
+        executor(registro, executor, "imoveis_executor_consultas_fila", "gauge",
+                "Consultas aguardando uma thread.", EstatisticasExecutor::getTamanhoDaFila);
+        executor(registro, executor, "imoveis_executor_consultas_ativas", "gauge",
+                "Consultas em execucao.", EstatisticasExecutor::getThreadsAtivas);
+        executor(registro, executor, "imoveis_executor_consultas_rejeitadas_total", "counter",
+                "Consultas recusadas por fila cheia.", EstatisticasExecutor::getRejeitadas);
+        executor(registro, executor, "imoveis_executor_consultas_expiradas_total", "counter",
+                "Consultas que excederam o tempo limite.", EstatisticasExecutor::getExpiradas);
+    }
+
+    private static void executor(RegistroDeMetricas registro, ExecutorDeConsultas executor, String nome, String tipo,
+            String descricao, ToDoubleFunction<EstatisticasExecutor> valor) {
+        registro.registrarMedidor(nome, tipo, descricao, () -> valor.applyAsDouble(executor.obterEstatisticas()));
+    }
+
+}
@@ -0,0 +1,46 @@
+package br.com.devmedia.webservice.metricas;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Latencias e respostas por codigo de status de um metodo de recurso (ex.: "GET BuscaResource.getImoveis").
+
+public final class MetricasDoMetodo {
+
+    private final String metodoHttp;
+    private final String recurso;
+    private final HistogramaDeLatencia latencias = new HistogramaDeLatencia();
+    private final ConcurrentMap<Integer, LongAdder> respostasPorStatus = new ConcurrentHashMap<>();
+
+    MetricasDoMetodo(String metodoHttp, String recurso) {
+        this.metodoHttp = metodoHttp;
+        this.recurso = recurso;
+    }
+
+    public void registrar(int status, long nanos) {
+        latencias.registrar(nanos);
+        LongAdder respostas = respostasPorStatus.get(status);
+        if (respostas == null) {
+            respostas = respostasPorStatus.computeIfAbsent(status, s -> new LongAdder());
+        }
+        respostas.increment();
+    }
+
+    String getMetodoHttp() {
+        return metodoHttp;
+    }
+
+    String getRecurso() {
+        return recurso;
+    }
+
+    HistogramaDeLatencia getLatencias() {
+        return latencias;
+    }
+
+    ConcurrentMap<Integer, LongAdder> getRespostasPorStatus() {
+        return respostasPorStatus;
+    }
+
+}
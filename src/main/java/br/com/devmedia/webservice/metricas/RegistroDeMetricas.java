@@ -0,0 +1,118 @@
+package br.com.devmedia.webservice.metricas;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+// 1. Guarda as metricas das requisicoes (latencias e respostas por metodo de recurso, requisicoes em
+//    andamento) e os medidores registrados pelos demais componentes (cache de autenticacao, pool de
+//    conexoes, pools de threads).
+// 2. Exporta tudo no formato texto do Prometheus (GET /webapi/metrics).
+
+public final class RegistroDeMetricas {
+
+    private static final RegistroDeMetricas INSTANCIA = new RegistroDeMetricas();
+
+    private static final String NAO_MAPEADO = "nao_mapeado";
+
+    private final ConcurrentMap<String, MetricasDoMetodo> metodos = new ConcurrentHashMap<>();
+    private final AtomicInteger emAndamento = new AtomicInteger();
+    private final Map<String, Medidor> medidores = new ConcurrentHashMap<>();
+
+    public static RegistroDeMetricas getInstancia() {
+        return INSTANCIA;
+    }
+
+    public MetricasDoMetodo metodo(String metodoHttp, String recurso) {
+        return metodos.computeIfAbsent(metodoHttp + " " + recurso, chave -> new MetricasDoMetodo(metodoHttp, recurso));
+    }
+
+    // Requisicoes que nao chegaram a um metodo de recurso (ex.: 404, 405).
+    public MetricasDoMetodo naoMapeado(String metodoHttp) {
+        return metodo(metodoHttp, NAO_MAPEADO);
+    }
+
+    public void iniciarRequisicao() {
+        emAndamento.incrementAndGet();
+    }
+
+    public void concluirRequisicao() {
+        emAndamento.decrementAndGet();
+    }
+
+    // Medidor lido no momento da exportacao. Medidores do tipo "counter" devem ser sempre crescentes.
+    public void registrarMedidor(String nome, String tipo, String descricao, DoubleSupplier valor) {
+        medidores.put(nome, new Medidor(tipo, descricao, valor));
+    }
+
+    public void exportar(Writer saida) throws IOException {
+        Map<String, MetricasDoMetodo> ordenados = new TreeMap<>(metodos);
+
+        cabecalho(saida, "imoveis_requisicoes_segundos", "histogram",
+                "Latencia das requisicoes ate o fim da escrita da resposta (corpo incluido), por metodo de recurso.");
+        for (MetricasDoMetodo metodo : ordenados.values()) {
+            String rotulos = "metodo=\"" + metodo.getMetodoHttp() + "\",recurso=\"" + metodo.getRecurso() + "\"";
+            long[] acumulados = metodo.getLatencias().obterAcumulados();
+            for (int i = 0; i < HistogramaDeLatencia.LIMITES_SEGUNDOS.length; i++) {
+                linha(saida, "imoveis_requisicoes_segundos_bucket",
+                        rotulos + ",le=\"" + HistogramaDeLatencia.LIMITES_SEGUNDOS[i] + "\"", acumulados[i]);
+            }
+            long total = acumulados[acumulados.length - 1];
+            linha(saida, "imoveis_requisicoes_segundos_bucket", rotulos + ",le=\"+Inf\"", total);
+            linha(saida, "imoveis_requisicoes_segundos_sum", rotulos, metodo.getLatencias().obterSomaSegundos());
+            linha(saida, "imoveis_requisicoes_segundos_count", rotulos, total);
+        }
+
+        cabecalho(saida, "imoveis_respostas_total", "counter", "Respostas por metodo de recurso e codigo de status.");
+        for (MetricasDoMetodo metodo : ordenados.values()) {
+            for (Map.Entry<Integer, LongAdder> respostas : new TreeMap<>(metodo.getRespostasPorStatus()).entrySet()) {
+                linha(saida, "imoveis_respostas_total", "metodo=\"" + metodo.getMetodoHttp() + "\",recurso=\""
+                        + metodo.getRecurso() + "\",status=\"" + respostas.getKey() + "\"", respostas.getValue().sum());
+            }
+        }
+
+        cabecalho(saida, "imoveis_requisicoes_em_andamento", "gauge", "Requisicoes sendo processadas.");
+        linha(saida, "imoveis_requisicoes_em_andamento", null, emAndamento.get());
+
+        for (Map.Entry<String, Medidor> entrada : new TreeMap<>(medidores).entrySet()) {
+            Medidor medidor = entrada.getValue();
+            cabecalho(saida, entrada.getKey(), medidor.tipo, medidor.descricao);
+            linha(saida, entrada.getKey(), null, medidor.valor.getAsDouble());
+        }
+    }
+
+    private static void cabecalho(Writer saida, String nome, String tipo, String descricao) throws IOException {
+        saida.write("# HELP " + nome + " " + descricao + "\n");
+        saida.write("# TYPE " + nome + " " + tipo + "\n");
+    }
+
+    private static void linha(Writer saida, String nome, String rotulos, double valor) throws IOException {
+        saida.write(nome);
+        if (rotulos != null) {
+            saida.write("{" + rotulos + "}");
+        }
+        saida.write(" ");
+        saida.write(valor == Math.rint(valor) && !Double.isInfinite(valor) ? Long.toString((long) valor) : Double.toString(valor));
+        saida.write("\n");
+    }
+
+    private static final class Medidor {
+
+        private final String tipo;
+        private final String descricao;
+        private final DoubleSupplier valor;
+
+        private Medidor(String tipo, String descricao, DoubleSupplier valor) {
+            this.tipo = tipo;
+            this.descricao = descricao;
+            this.valor = valor;
+        }
+    }
+
+}
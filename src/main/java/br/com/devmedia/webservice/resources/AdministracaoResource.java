@@ -0,0 +1,95 @@
+package br.com.devmedia.webservice.resources;
+
+import br.com.devmedia.webservice.domain.EstadoReplica;
+import br.com.devmedia.webservice.domain.EstatisticasCache;
+import br.com.devmedia.webservice.domain.EstatisticasExecutor;
+import br.com.devmedia.webservice.domain.EstatisticasRegiaoCache;
+import br.com.devmedia.webservice.domain.EstatisticasSql;
+import br.com.devmedia.webservice.domain.Tipo;
+import br.com.devmedia.webservice.resources.filter.AcessoRestrito;
+import br.com.devmedia.webservice.service.AdministracaoService;
+import br.com.devmedia.webservice.service.ImovelService;
+import br.com.devmedia.webservice.service.UsuarioService;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.ws.rs.DELETE;
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.util.List;
+
+// Informacoes de monitoramento, disponiveis apenas para o administrador.
+
+@Path("/admin")
+@Singleton
+@AcessoRestrito({Tipo.ADMINISTRADOR})
+@Produces(MediaType.APPLICATION_JSON + ";charset=utf-8")
+public class AdministracaoResource {
+
+    @Inject
+    private UsuarioService usuarioService;
+
+    @Inject
+    private ImovelService imovelService;
+
+    @Inject
+    private AdministracaoService administracaoService;
+
+    @Inject
+    private ExecutorDeConsultas executorDeConsultas;
+
+    @GET
+    @Path("cache-autenticacao")
+    public EstatisticasCache obterEstatisticasCacheDeAutenticacao() {
+        return usuarioService.getEstatisticasCacheDeAutenticacao();
+    }
+
+    // Regioes do cache de segundo nivel e do cache de consultas do Hibernate.
+    @GET
+    @Path("cache-entidades")
+    public List<EstatisticasRegiaoCache> obterEstatisticasCacheDeEntidades() {
+        return administracaoService.getEstatisticasCacheDeEntidades();
+    }
+
+    // Pool que executa as consultas assincronas dos recursos.
+    @GET
+    @Path("executor-consultas")
+    public EstatisticasExecutor obterEstatisticasExecutorDeConsultas() {
+        return executorDeConsultas.obterEstatisticas();
+    }
+
+    // Comandos SQL (tempos medidos na conexao) e consultas JPQL (estatisticas do Hibernate). Os comandos mais lentos
+    // que imoveis.sql.lentaMs tambem sao registrados no log, com os parametros (ver MonitorDeSql).
+    @GET
+    @Path("sql")
+    public EstatisticasSql obterEstatisticasSql() {
+        return administracaoService.getEstatisticasSql();
+    }
+
+    @DELETE
+    @Path("sql")
+    public Response limparEstatisticasSql() {
+        administracaoService.limparEstatisticasSql();
+        return Response.noContent().build();
+    }
+
+    // Replicas de leitura: disponibilidade, atraso medido na ultima verificacao e leituras atendidas.
+    @GET
+    @Path("replicas")
+    public List<EstadoReplica> obterEstadoDasReplicas() {
+        return administracaoService.getEstadoDasReplicas();
+    }
+
+    // Reconstroi o indice textual dos imoveis a partir do banco de dados.
+    @POST
+    @Path("indice-imoveis")
+    public Response reconstruirIndiceDeImoveis() {
+        imovelService.reconstruirIndice();
+        return Response.noContent().build();
+    }
+
+}
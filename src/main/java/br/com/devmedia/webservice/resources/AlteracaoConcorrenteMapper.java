@@ -0,0 +1,34 @@
+package br.com.devmedia.webservice.resources;
+
+import javax.persistence.OptimisticLockException;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.ext.ExceptionMapper;
+import javax.ws.rs.ext.Provider;
+
+import br.com.devmedia.webservice.domain.ErrorMessage;
+
+// 1. A versao informada pelo cliente (If-Match ou campo "versao") nao e mais a atual: outra requisicao alterou
+//    o registro depois que ele foi lido.
+// 2. Com If-Match a resposta e 412 (a precondicao do proprio HTTP falhou); com o campo "versao", 409. Nos dois
+//    casos o cliente deve ler o registro de novo antes de repetir a alteracao.
+
+@Provider
+public class AlteracaoConcorrenteMapper implements ExceptionMapper<OptimisticLockException> {
+
+    @Context
+    private HttpHeaders headers;
+
+    @Override
+    public Response toResponse(OptimisticLockException ex) {
+        Status status = (headers.getHeaderString(HttpHeaders.IF_MATCH) != null)
+                ? Status.PRECONDITION_FAILED : Status.CONFLICT;
+        return Response.status(status)
+                .entity(new ErrorMessage("Registro alterado por outra requisicao; leia-o novamente.",
+                        status.getStatusCode()))
+                .build();
+    }
+
+}
@@ -1,38 +1,154 @@
 package br.com.devmedia.webservice.resources;
 
+import br.com.devmedia.webservice.dao.FiltroImovel;
+import br.com.devmedia.webservice.dao.OrdenacaoImovel;
+import br.com.devmedia.webservice.domain.ErrorMessage;
 import br.com.devmedia.webservice.domain.Imovel;
 import br.com.devmedia.webservice.resources.beans.ConfiguracaoConsultaBean;
+import br.com.devmedia.webservice.resources.beans.CursorDePaginacao;
 import br.com.devmedia.webservice.service.ImovelService;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
 import javax.ws.rs.*;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.GenericEntity;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriInfo;
 import java.util.List;
 
 @Path("/buscas")
-@Produces(MediaType.APPLICATION_JSON + ";charset=utf-8")
+@Singleton
+@Produces({MediaType.APPLICATION_JSON + ";charset=utf-8", ProvedorSmile.APPLICATION_SMILE})
 public class BuscaResource {
 
-    private final ImovelService imovelService = new ImovelService();
+    private static final Logger LOGGER = LoggerFactory.getLogger(BuscaResource.class);
+
+    private static final int LIMITE_PADRAO = 20;
+    private static final int LIMITE_MAXIMO = 100;
+
+    private static final long TEMPO_LIMITE_MS = ExecutorDeConsultas.tempoLimite("buscas");
+    private static final RespostaCondicional RESPOSTA_CONDICIONAL = new RespostaCondicional("buscas");
+
+    @Inject
+    private ImovelService imovelService;
+
+    @Inject
+    private ExecutorDeConsultas executorDeConsultas;
 
+    // Os criterios informados (nome, endereco, direcionamento, valorMinimo, valorMaximo) sao combinados em
+    // uma unica consulta, com ordenacao (?ordenacao=id|nome|-nome|valor|-valor) e paginacao por
+    // deslocamento (?offset=n&limit=n) ou por cursor (?after=<cursor>&limit=n).
+    // Sem criterios nem paginacao, a listagem completa e escrita a medida que os imoveis sao lidos.
+    // Buscas por nome/endereco usam o indice textual e, sem ordenacao explicita, vem ordenadas por relevancia.
+    // As pesquisas sao executadas fora da thread do container (ver ExecutorDeConsultas).
+    // A ETag combina o estado da tabela de imoveis com os parametros da busca; enquanto nenhum imovel mudar,
+    // o If-None-Match do cliente e respondido com 304 sem que a pesquisa seja executada (ver RespostaCondicional).
     @GET
-    public List<Imovel> getImoveis(@BeanParam ConfiguracaoConsultaBean configuracao) {
-    	
-    	System.out.println(">>> getImoveis()");
-    	
-        if ((configuracao.getOffset() >= 0) && (configuracao.getLimit() > 0)) {
-            return imovelService.obterImoveisPorPaginacao(configuracao.getOffset(), configuracao.getLimit());
+    public void getImoveis(@BeanParam ConfiguracaoConsultaBean configuracao, @Context UriInfo uriInfo,
+            @Context Request request, @Suspended AsyncResponse asyncResponse) {
+        LOGGER.debug("getImoveis {}", uriInfo.getRequestUri());
+
+        FiltroImovel filtro;
+        try {
+            filtro = montarFiltro(configuracao);
+        } catch (IllegalArgumentException ex) {
+            asyncResponse.resume(Response.status(Response.Status.BAD_REQUEST)
+                    .entity(new ErrorMessage(ex.getMessage(), Response.Status.BAD_REQUEST.getStatusCode()))
+                    .build());
+            return;
+        }
+
+        if (configuracao.getAfter() != null) {
+            executorDeConsultas.executar(asyncResponse, TEMPO_LIMITE_MS, () -> {
+                EntityTag etag = etagDaBusca(uriInfo);
+                Response naoModificado = RESPOSTA_CONDICIONAL.naoModificado(request, etag);
+                return naoModificado != null ? naoModificado : getImoveisPorCursor(filtro, uriInfo, request, etag);
+            });
+            return;
         }
-        if (configuracao.getNome() != null) {
-            return imovelService.obterImoveisPorNome(configuracao.getNome());
+        if (isListagemCompleta(filtro, configuracao)) {
+            // a leitura acontece durante a escrita da resposta, que ja e feita em fluxo
+            OrdenacaoImovel ordenacao = filtro.getOrdenacao();
+            asyncResponse.resume(RESPOSTA_CONDICIONAL.responder(request, etagDaBusca(uriInfo),
+                    () -> new ListagemEmFluxo<>(Imovel.class,
+                            consumidor -> imovelService.listarImoveis(ordenacao, consumidor))));
+            return;
         }
-        if (configuracao.getEndereco() != null) {
-            return imovelService.obterImoveisPorEndereco(configuracao.getEndereco());
+        if (configuracao.getLimit() > 0) {
+            filtro.setPrimeiroResultado(Math.max(configuracao.getOffset() - 1, 0));
+            filtro.setMaximoResultados(configuracao.getLimit());
         }
+        executorDeConsultas.executar(asyncResponse, TEMPO_LIMITE_MS, () -> RESPOSTA_CONDICIONAL.responder(request,
+                etagDaBusca(uriInfo), () -> new GenericEntity<List<Imovel>>(imovelService.pesquisarImoveis(filtro)) { }));
+    }
+
+    // requisicoes do tipo: /buscas?after=<cursor>&limit=n
+    // a resposta traz o cursor da proxima pagina no cabecalho X-Proximo-Cursor e no Link rel="next".
+    private Response getImoveisPorCursor(FiltroImovel filtro, UriInfo uriInfo, Request request, EntityTag etag) {
+        int limit = filtro.getMaximoResultados();
+        List<Imovel> imoveis = imovelService.pesquisarImoveis(filtro);
+
+        Response.ResponseBuilder resposta = RESPOSTA_CONDICIONAL.ok(request,
+                new GenericEntity<List<Imovel>>(imoveis) { }, etag);
+        if (imoveis.size() == limit) {
+            String proximoCursor = CursorDePaginacao.codificar(imoveis.get(imoveis.size() - 1).getId());
+            resposta.header("X-Proximo-Cursor", proximoCursor)
+                    .link(uriInfo.getRequestUriBuilder()
+                            .replaceQueryParam("after", proximoCursor)
+                            .replaceQueryParam("limit", limit)
+                            .build(), "next");
+        }
+        return resposta.build();
+    }
+
+    // sem criterios nem paginacao a resposta pode ter todos os imoveis: e escrita em fluxo (ver ListagemEmFluxo)
+    private static boolean isListagemCompleta(FiltroImovel filtro, ConfiguracaoConsultaBean configuracao) {
+        return (configuracao.getLimit() <= 0) && (filtro.getNome() == null) && (filtro.getEndereco() == null)
+                && (filtro.getDirecionamento() == null) && (filtro.getValorMinimo() == null)
+                && (filtro.getValorMaximo() == null);
+    }
+
+    private FiltroImovel montarFiltro(ConfiguracaoConsultaBean configuracao) {
+        FiltroImovel filtro = new FiltroImovel();
+        filtro.setNome(configuracao.getNome());
+        filtro.setEndereco(configuracao.getEndereco());
         if (configuracao.getDirecionamento() != null) {
-            return imovelService.obterImoveisPorDirecionamento(configuracao.getDirecionamento());
+            filtro.setDirecionamento(imovelService.direcionamentoConverter(configuracao.getDirecionamento()));
+        }
+        filtro.setValorMinimo(configuracao.getValorMinimo());
+        filtro.setValorMaximo(configuracao.getValorMaximo());
+        if (configuracao.getOrdenacao() != null) {
+            filtro.setOrdenacao(OrdenacaoImovel.deParametro(configuracao.getOrdenacao()));
+        } else {
+            filtro.setOrdenarPorRelevancia(true);
         }
+        if (configuracao.getAfter() != null) {
+            if (filtro.getOrdenacao() != OrdenacaoImovel.ID) {
+                throw new IllegalArgumentException("A paginacao por cursor exige ordenacao por id.");
+            }
+            try {
+                filtro.setAposId(CursorDePaginacao.decodificar(configuracao.getAfter()));
+            } catch (IllegalArgumentException ex) {
+                throw new IllegalArgumentException("Cursor de paginacao invalido.", ex);
+            }
+            filtro.setMaximoResultados(configuracao.getLimit() > 0
+                    ? Math.min(configuracao.getLimit(), LIMITE_MAXIMO) : LIMITE_PADRAO);
+        }
+        return filtro;
+    }
 
-        return imovelService.listarImoveis();
+    private EntityTag etagDaBusca(UriInfo uriInfo) {
+        return RespostaCondicional.etagDaListagem(imovelService.obterEstadoDosImoveis(),
+                String.valueOf(uriInfo.getRequestUri().getRawQuery()));
     }
 
 }
@@ -0,0 +1,27 @@
+package br.com.devmedia.webservice.resources;
+
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.ext.ContextResolver;
+import javax.ws.rs.ext.Provider;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+// 1. O ObjectMapper do JSON, unico na aplicacao: o provedor Jackson do Jersey o obtem deste ContextResolver, e as
+//    listagens em fluxo (ListagemEmFluxo) e a importacao NDJSON (ImovelResource) o usam diretamente, de modo que
+//    uma entidade e lida e escrita da mesma forma em todos os caminhos.
+// 2. Configuracoes do Jackson (modulos, features) sao feitas aqui, no mapper; nao valem para o Smile, que tem o
+//    seu (ver ProvedorSmile).
+
+@Provider
+@Produces(MediaType.APPLICATION_JSON)
+public class ConfiguracaoJackson implements ContextResolver<ObjectMapper> {
+
+    static final ObjectMapper JSON = new ObjectMapper();
+
+    @Override
+    public ObjectMapper getContext(Class<?> type) {
+        return JSON;
+    }
+
+}
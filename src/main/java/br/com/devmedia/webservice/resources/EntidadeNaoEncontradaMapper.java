@@ -0,0 +1,23 @@
+package br.com.devmedia.webservice.resources;
+
+import javax.persistence.EntityNotFoundException;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.ext.ExceptionMapper;
+import javax.ws.rs.ext.Provider;
+
+import br.com.devmedia.webservice.domain.ErrorMessage;
+
+// Alteracao (PUT/PATCH) de um imovel ou usuario inexistente.
+
+@Provider
+public class EntidadeNaoEncontradaMapper implements ExceptionMapper<EntityNotFoundException> {
+
+    @Override
+    public Response toResponse(EntityNotFoundException ex) {
+        return Response.status(Status.NOT_FOUND)
+                .entity(new ErrorMessage(ex.getMessage(), Status.NOT_FOUND.getStatusCode()))
+                .build();
+    }
+
+}
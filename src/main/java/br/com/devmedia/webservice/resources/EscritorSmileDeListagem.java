@@ -0,0 +1,39 @@
+package br.com.devmedia.webservice.resources;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+
+// Listagens em fluxo pedidas em Smile. Por ser especifico de ListagemEmFluxo, este writer tem precedencia sobre o
+// de StreamingOutput do Jersey, que as escreveria em JSON.
+
+@Provider
+@Produces(ProvedorSmile.APPLICATION_SMILE)
+public class EscritorSmileDeListagem implements MessageBodyWriter<ListagemEmFluxo<?>> {
+
+    @Override
+    public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return ListagemEmFluxo.class.isAssignableFrom(type);
+    }
+
+    @Override
+    public long getSize(ListagemEmFluxo<?> listagem, Class<?> type, Type genericType, Annotation[] annotations,
+            MediaType mediaType) {
+        return -1;
+    }
+
+    @Override
+    public void writeTo(ListagemEmFluxo<?> listagem, Class<?> type, Type genericType, Annotation[] annotations,
+            MediaType mediaType, MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream)
+            throws IOException {
+        listagem.escrever(entityStream, ProvedorSmile.MAPPER);
+    }
+
+}
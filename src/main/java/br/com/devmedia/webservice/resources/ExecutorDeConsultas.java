@@ -0,0 +1,117 @@
+package br.com.devmedia.webservice.resources;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.core.Response;
+
+import br.com.devmedia.webservice.dao.ContextoDePersistencia;
+import br.com.devmedia.webservice.domain.ErrorMessage;
+import br.com.devmedia.webservice.domain.EstatisticasExecutor;
+
+// 1. Executa as consultas dos recursos (@Suspended AsyncResponse) em um pool dedicado e limitado, liberando a
+//    thread do container enquanto o banco responde.
+// 2. Fila cheia ou tempo limite excedido resultam em 503; o tempo limite de cada recurso e lido de
+//    imoveis.consultas.<recurso>.timeoutMs, com imoveis.consultas.timeoutMs como padrao.
+// 3. Cada tarefa usa o seu proprio contexto de persistencia, fechado ao final; o contexto eventualmente aberto
+//    pela thread do container (ex.: na autenticacao) e fechado antes do despacho. Leituras fixadas no banco
+//    principal (ver ContextoDePersistencia) continuam fixadas na tarefa.
+// 4. Configuracao (propriedades de sistema): imoveis.consultas.threads e imoveis.consultas.fila.
+
+public final class ExecutorDeConsultas {
+
+    private static final ExecutorDeConsultas INSTANCIA = new ExecutorDeConsultas(
+            Integer.getInteger("imoveis.consultas.threads", 20),
+            Integer.getInteger("imoveis.consultas.fila", 200));
+
+    private static final long TEMPO_LIMITE_PADRAO_MS = Long.getLong("imoveis.consultas.timeoutMs", 10000);
+
+    private final ThreadPoolExecutor executor;
+    private final int capacidadeDaFila;
+
+    private final LongAdder rejeitadas = new LongAdder();
+    private final LongAdder expiradas = new LongAdder();
+
+    private ExecutorDeConsultas(int threads, int capacidadeDaFila) {
+        this.capacidadeDaFila = capacidadeDaFila;
+        AtomicInteger contador = new AtomicInteger();
+        ThreadFactory threadFactory = tarefa -> {
+            Thread thread = new Thread(tarefa, "executor-de-consultas-" + contador.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(capacidadeDaFila), threadFactory, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    public static ExecutorDeConsultas getInstancia() {
+        return INSTANCIA;
+    }
+
+    public static long tempoLimite(String recurso) {
+        return Long.getLong("imoveis.consultas." + recurso + ".timeoutMs", TEMPO_LIMITE_PADRAO_MS);
+    }
+
+    // O resultado da consulta (entidade ou Response) e entregue por resume; excecoes seguem para os
+    // ExceptionMappers do Jersey como em um metodo sincrono.
+    public void executar(AsyncResponse asyncResponse, long tempoLimiteMs, Supplier<?> consulta) {
+        boolean leiturasNoPrincipal = ContextoDePersistencia.isLeiturasNoPrincipal();
+        ContextoDePersistencia.fechar();
+
+        AtomicReference<Future<?>> tarefa = new AtomicReference<>();
+        asyncResponse.setTimeoutHandler(resposta -> {
+            expiradas.increment();
+            Future<?> emExecucao = tarefa.get();
+            if (emExecucao != null) {
+                // se ainda estiver na fila, a consulta nem chega a ser executada
+                emExecucao.cancel(false);
+            }
+            resposta.resume(indisponivel("Tempo limite da consulta excedido."));
+        });
+        asyncResponse.setTimeout(tempoLimiteMs, TimeUnit.MILLISECONDS);
+
+        try {
+            tarefa.set(executor.submit(() -> {
+                try {
+                    if (leiturasNoPrincipal) {
+                        ContextoDePersistencia.fixarLeiturasNoPrincipal();
+                    }
+                    asyncResponse.resume(consulta.get());
+                } catch (RuntimeException | Error ex) {
+                    asyncResponse.resume(ex);
+                } finally {
+                    ContextoDePersistencia.fechar();
+                }
+            }));
+        } catch (RejectedExecutionException ex) {
+            rejeitadas.increment();
+            asyncResponse.resume(indisponivel("Servidor ocupado, tente novamente."));
+        }
+    }
+
+    public EstatisticasExecutor obterEstatisticas() {
+        return new EstatisticasExecutor(executor.getMaximumPoolSize(), executor.getActiveCount(),
+                executor.getQueue().size(), capacidadeDaFila, executor.getCompletedTaskCount(),
+                rejeitadas.sum(), expiradas.sum());
+    }
+
+    public void encerrar() {
+        executor.shutdownNow();
+    }
+
+    private static Response indisponivel(String mensagem) {
+        return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                .entity(new ErrorMessage(mensagem, Response.Status.SERVICE_UNAVAILABLE.getStatusCode()))
+                .build();
+    }
+
+}
@@ -1,23 +1,42 @@
 package br.com.devmedia.webservice.resources;
 
-import java.util.List;
+import java.io.IOException;
+import java.io.InputStream;
 
+import javax.inject.Inject;
+import javax.inject.Singleton;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.POST;
 import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
 
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import br.com.devmedia.webservice.dao.OrdenacaoImovel;
+import br.com.devmedia.webservice.domain.ErrorMessage;
 import br.com.devmedia.webservice.domain.Imovel;
 import br.com.devmedia.webservice.domain.Tipo;
 import br.com.devmedia.webservice.resources.filter.AcessoRestrito;
+import br.com.devmedia.webservice.resources.filter.LimiteDeRequisicoes;
 import br.com.devmedia.webservice.service.ImovelService;
+import br.com.devmedia.webservice.service.ImportacaoDeImoveis;
 
 // OBS.: Apesar do "erro" apresentado em cadastrarImovel, em tempo de execuo o sistema reconhece que o 
 //       parmetro "usuarioId" vem do @Path("{usuarioId}/imoveis") de UsuarioResource
@@ -25,13 +44,28 @@ import br.com.devmedia.webservice.service.ImovelService;
 // 1. Aqui em @AcessoRestrito qualquer usurio poder acessar os mtodos desta classe, apenas devem est autenticados.
 // 2. Observe que no foi informado o array de permisses.
 // 3. Observe que apenas o administrador poder excluir imvel.
+// 4. PUT substitui o imvel e PATCH altera apenas os campos enviados; ambos aceitam If-Match com a ETag lida.
+// 5. As respostas saem em JSON ou, se o cliente pedir no Accept, em Smile (ver ProvedorSmile).
 
 @AcessoRestrito
+@Singleton
 @Consumes(MediaType.APPLICATION_JSON + ";charset=utf-8")
-@Produces(MediaType.APPLICATION_JSON + ";charset=utf-8")
+@Produces({MediaType.APPLICATION_JSON + ";charset=utf-8", ProvedorSmile.APPLICATION_SMILE})
 public class ImovelResource {
 
-    private final ImovelService imovelService = new ImovelService();
+    public static final String APPLICATION_NDJSON = "application/x-ndjson";
+    public static final String APPLICATION_MERGE_PATCH_JSON = "application/merge-patch+json";
+
+    private static final ObjectReader LEITOR_IMOVEL = ConfiguracaoJackson.JSON.readerFor(Imovel.class);
+
+    private static final long TEMPO_LIMITE_MS = ExecutorDeConsultas.tempoLimite("imoveis");
+    private static final RespostaCondicional RESPOSTA_CONDICIONAL = new RespostaCondicional("imoveis");
+
+    @Inject
+    private ImovelService imovelService;
+
+    @Inject
+    private ExecutorDeConsultas executorDeConsultas;
 
     @POST
     public Response cadastrarImovel(@PathParam("usuarioId") long donoImovelId, Imovel imovel) {
@@ -41,21 +75,92 @@ public class ImovelResource {
                 .build();
     }
 
+    // Importacao em lote: recebe um array JSON ou NDJSON (um imovel por linha), lido a medida que chega.
+    // Itens invalidos nao interrompem a importacao e sao informados no resultado. Cada importacao ocupa o banco
+    // por mais tempo, dai o limite proprio por usuario.
+    @POST
+    @Path("lote")
+    @Consumes({MediaType.APPLICATION_JSON, APPLICATION_NDJSON})
+    @LimiteDeRequisicoes(porSegundo = 0.5, rajada = 2)
+    public Response importarImoveis(@PathParam("usuarioId") long donoImovelId, InputStream entrada) throws IOException {
+        ImportacaoDeImoveis importacao = imovelService.iniciarImportacao(donoImovelId);
+        if (importacao == null) {
+            return Response.status(Status.NOT_FOUND)
+                    .entity(new ErrorMessage("Usuario nao encontrado.", Status.NOT_FOUND.getStatusCode()))
+                    .build();
+        }
+
+        try (MappingIterator<Imovel> imoveis = LEITOR_IMOVEL.readValues(entrada)) {
+            while (imoveis.hasNextValue()) {
+                try {
+                    importacao.adicionar(imoveis.nextValue());
+                } catch (JsonMappingException ex) {
+                    importacao.registrarFalha(ex.getOriginalMessage());
+                }
+            }
+        } catch (JsonParseException ex) {
+            // JSON mal formado: o restante da entrada nao pode ser lido, mas o que ja foi lido e gravado
+            importacao.registrarFalha(ex.getOriginalMessage());
+        }
+        return Response.ok(importacao.concluir()).build();
+    }
+
+    // a listagem completa e escrita a medida que os imoveis sao lidos do banco (ver ListagemEmFluxo)
+    // e so quando a ETag do cliente nao vale mais (ver RespostaCondicional)
     @GET
-    public List<Imovel> recuperarImoveis() {
-        return imovelService.listarImoveis();
+    public Response recuperarImoveis(@Context Request request) {
+        EntityTag etag = RespostaCondicional.etagDaListagem(imovelService.obterEstadoDosImoveis(), "imoveis");
+        return RESPOSTA_CONDICIONAL.responder(request, etag, () -> new ListagemEmFluxo<>(Imovel.class,
+                consumidor -> imovelService.listarImoveis(OrdenacaoImovel.ID, consumidor)));
     }
 
+    // executado fora da thread do container (ver ExecutorDeConsultas)
     @GET
     @Path("{imovelId}")
-    public Imovel recuperarImovel(@PathParam("imovelId") long id) {
-        return imovelService.obterImovel(id);
+    public void recuperarImovel(@PathParam("imovelId") long id, @Context Request request,
+            @Suspended AsyncResponse asyncResponse) {
+        executorDeConsultas.executar(asyncResponse, TEMPO_LIMITE_MS, () -> responderImovel(id, request));
+    }
+
+    // com If-None-Match valido responde 304 apenas com a consulta da versao, sem carregar o imovel
+    private Response responderImovel(long id, Request request) {
+        Long versao = imovelService.obterVersaoDoImovel(id);
+        if (versao == null) {
+            return Response.status(Status.NOT_FOUND)
+                    .entity(new ErrorMessage("Imovel nao encontrado.", Status.NOT_FOUND.getStatusCode()))
+                    .build();
+        }
+        Response naoModificado = RESPOSTA_CONDICIONAL.naoModificado(request,
+                RespostaCondicional.etagDaEntidade(id, versao));
+        if (naoModificado != null) {
+            return naoModificado;
+        }
+        Imovel imovel = imovelService.obterImovel(id);
+        return RESPOSTA_CONDICIONAL.ok(request, imovel, RespostaCondicional.etagDaEntidade(id, imovel.getVersao()))
+                .build();
     }
 
+    // Com If-Match (ou o campo "versao") o imovel e gravado em um unico UPDATE, sem leitura previa; a resposta
+    // traz a ETag da nova versao. Versao desatualizada: 412/409 (ver AlteracaoConcorrenteMapper).
     @PUT
     @Path("{imovelId}")
-    public void atualizarImovel(@PathParam("imovelId") long imovelId, Imovel imovel) {
-        imovelService.atualizarImovel(imovelId, imovel);
+    public Response atualizarImovel(@PathParam("imovelId") long imovelId,
+            @HeaderParam(HttpHeaders.IF_MATCH) String ifMatch, Imovel imovel) {
+        Long versao = RespostaCondicional.versaoDoIfMatch(ifMatch, imovelId);
+        Imovel atualizado = imovelService.atualizarImovel(imovelId, imovel, versao);
+        return Response.noContent().tag(RespostaCondicional.etagDaEntidade(imovelId, atualizado.getVersao())).build();
+    }
+
+    // alteracao parcial: os campos ausentes (ou nulos) no corpo permanecem como estao
+    @PATCH
+    @Path("{imovelId}")
+    @Consumes({MediaType.APPLICATION_JSON, APPLICATION_MERGE_PATCH_JSON})
+    public Response corrigirImovel(@PathParam("imovelId") long imovelId,
+            @HeaderParam(HttpHeaders.IF_MATCH) String ifMatch, @Context Request request, Imovel alteracoes) {
+        Long versao = RespostaCondicional.versaoDoIfMatch(ifMatch, imovelId);
+        Imovel atualizado = imovelService.alterarImovel(imovelId, alteracoes, versao);
+        return RESPOSTA_CONDICIONAL.ok(request, atualizado,
+                RespostaCondicional.etagDaEntidade(imovelId, atualizado.getVersao())).build();
     }
 
     @DELETE
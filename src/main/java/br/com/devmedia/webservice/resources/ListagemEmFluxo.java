@@ -0,0 +1,69 @@
+package br.com.devmedia.webservice.resources;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+
+import javax.ws.rs.core.StreamingOutput;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import br.com.devmedia.webservice.dao.ContextoDePersistencia;
+
+// Escreve uma listagem JSON a medida que os registros sao lidos do banco: o primeiro byte sai assim que o
+// primeiro registro chega e a memoria usada nao depende do numero de registros. Um unico JsonGenerator e
+// reaproveitado para todos os elementos da resposta, com o mesmo ObjectMapper das demais respostas JSON (ver
+// ConfiguracaoJackson). Em Smile a listagem e escrita pelo EscritorSmileDeListagem.
+// A escrita acontece depois do fechamento do contexto da requisicao; se as leituras da requisicao estavam
+// fixadas no banco principal (ver ContextoDePersistencia), a listagem tambem e lida dele.
+
+public class ListagemEmFluxo<T> implements StreamingOutput {
+
+    private final Class<T> tipo;
+    private final Consumer<Consumer<T>> fonte;
+    private final boolean leiturasNoPrincipal;
+
+    public ListagemEmFluxo(Class<T> tipo, Consumer<Consumer<T>> fonte) {
+        this.tipo = tipo;
+        this.fonte = fonte;
+        this.leiturasNoPrincipal = ContextoDePersistencia.isLeiturasNoPrincipal();
+    }
+
+    @Override
+    public void write(OutputStream output) throws IOException {
+        escrever(output, ConfiguracaoJackson.JSON);
+    }
+
+    void escrever(OutputStream output, ObjectMapper mapper) throws IOException {
+        ObjectWriter writer = mapper.writerFor(tipo);
+        if (leiturasNoPrincipal) {
+            ContextoDePersistencia.fixarLeiturasNoPrincipal();
+        }
+        try (JsonGenerator gerador = mapper.getFactory().createGenerator(output, JsonEncoding.UTF8)) {
+            // quem fecha a saida e o container
+            gerador.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            gerador.writeStartArray();
+            try {
+                fonte.accept(elemento -> {
+                    try {
+                        writer.writeValue(gerador, elemento);
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                });
+            } catch (UncheckedIOException ex) {
+                throw ex.getCause();
+            }
+            gerador.writeEndArray();
+        } finally {
+            if (leiturasNoPrincipal) {
+                ContextoDePersistencia.fechar();
+            }
+        }
+    }
+
+}
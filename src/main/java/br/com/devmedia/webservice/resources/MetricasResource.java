@@ -0,0 +1,36 @@
+package br.com.devmedia.webservice.resources;
+
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+import javax.inject.Singleton;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.StreamingOutput;
+
+import br.com.devmedia.webservice.domain.Tipo;
+import br.com.devmedia.webservice.metricas.RegistroDeMetricas;
+import br.com.devmedia.webservice.resources.filter.AcessoRestrito;
+
+// Metricas no formato texto do Prometheus. O coletor deve se autenticar como administrador (basic_auth).
+
+@Path("/metrics")
+@Singleton
+@AcessoRestrito({Tipo.ADMINISTRADOR})
+public class MetricasResource {
+
+    private final RegistroDeMetricas registro = RegistroDeMetricas.getInstancia();
+
+    @GET
+    @Produces("text/plain; version=0.0.4; charset=utf-8")
+    public StreamingOutput obterMetricas() {
+        return saida -> {
+            Writer writer = new OutputStreamWriter(saida, StandardCharsets.UTF_8);
+            registro.exportar(writer);
+            writer.flush();
+        };
+    }
+
+}
@@ -0,0 +1,19 @@
+package br.com.devmedia.webservice.resources;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import javax.ws.rs.HttpMethod;
+
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+// O JAX-RS 2.0 nao traz a anotacao do metodo PATCH (alteracao parcial: apenas os campos enviados mudam).
+
+@Target(METHOD)
+@Retention(RUNTIME)
+@Documented
+@HttpMethod("PATCH")
+public @interface PATCH {
+}
@@ -0,0 +1,52 @@
+package br.com.devmedia.webservice.resources;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.StreamingOutput;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+// 1. Representacao binaria (Smile) das respostas, escolhida pelo cliente com "Accept: application/x-jackson-smile".
+//    E o mesmo modelo de dados do JSON (as mesmas anotacoes do Jackson valem), com nomes de campos e valores
+//    repetidos referenciados em vez de reescritos: listas de imoveis ficam bem menores e sao mais rapidas de ler.
+// 2. As listagens em fluxo (ListagemEmFluxo) continuam sendo escritas elemento a elemento (ver
+//    EscritorSmileDeListagem).
+
+@Provider
+@Produces(ProvedorSmile.APPLICATION_SMILE)
+public class ProvedorSmile implements MessageBodyWriter<Object> {
+
+    public static final String APPLICATION_SMILE = "application/x-jackson-smile";
+
+    static final ObjectMapper MAPPER = new ObjectMapper(new SmileFactory())
+            .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+    @Override
+    public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return !StreamingOutput.class.isAssignableFrom(type);
+    }
+
+    @Override
+    public long getSize(Object entidade, Class<?> type, Type genericType, Annotation[] annotations,
+            MediaType mediaType) {
+        return -1;
+    }
+
+    @Override
+    public void writeTo(Object entidade, Class<?> type, Type genericType, Annotation[] annotations,
+            MediaType mediaType, MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream)
+            throws IOException {
+        MAPPER.writerFor(MAPPER.getTypeFactory().constructType(genericType)).writeValue(entityStream, entidade);
+    }
+
+}
@@ -0,0 +1,186 @@
+package br.com.devmedia.webservice.resources;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.CacheControl;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Variant;
+
+import br.com.devmedia.webservice.domain.ErrorMessage;
+
+// 1. ETags fortes: a de uma entidade e o id com a versao (@Version); a de uma listagem combina o estado da tabela
+//    (quantidade, maior id e soma das versoes, guardados em memoria por alguns segundos, ver CacheDeEntidades) com
+//    a variante pedida (ex.: os parametros da busca).
+// 2. Quando o If-None-Match do cliente ainda vale, a resposta e 304 sem que a entidade seja carregada ou
+//    serializada: a versao da entidade vem de uma consulta pequena, mantida no cache de consultas, e o estado da
+//    tabela, na maior parte das requisicoes, da leitura guardada.
+// 3. Cache-Control por recurso: imoveis.cache.<recurso>.maxAge (segundos). Sem a propriedade, o cliente pode
+//    guardar a resposta mas deve revalida-la a cada uso (no-cache). As respostas sao sempre privadas, pois
+//    dependem das credenciais, e variam com o Accept (JSON ou Smile, ver ProvedorSmile) e com o Accept-Encoding.
+// 4. Nas alteracoes (PUT/PATCH) o If-Match traz a ETag lida pelo cliente; dela sai a versao esperada, conferida
+//    na gravacao (ver AlteracaoConcorrenteMapper).
+// 5. Cada representacao tem a sua ETag: o formato e a codificacao (gzip ou deflate) escolhidos pelo Accept e pelo
+//    Accept-Encoding entram no fim da ETag ("12.3", "12.3-smile", "12.3-smile-gzip") e sao fixados na resposta,
+//    no lugar da escolha feita depois pelo Jersey e pelo EncodingFilter (que nao altera um Content-Encoding ja
+//    definido). Uma resposta abaixo do limiar de compressao sai sem compressao (ver CodificadorComLimiar), mas
+//    sempre da mesma forma para a mesma ETag.
+
+final class RespostaCondicional {
+
+    private static final String SEPARADOR_DA_VARIANTE = "-";
+    private static final String GZIP = "gzip";
+    private static final String DEFLATE = "deflate";
+
+    // na ordem de preferencia: JSON quando o cliente aceita qualquer um
+    private static final List<Variant> FORMATOS = Variant.mediaTypes(
+            MediaType.APPLICATION_JSON_TYPE.withCharset("utf-8"), MediaType.valueOf(ProvedorSmile.APPLICATION_SMILE))
+            .build();
+
+    private final CacheControl cacheControl;
+
+    RespostaCondicional(String recurso) {
+        int maxAge = Integer.getInteger("imoveis.cache." + recurso + ".maxAge", 0);
+        cacheControl = new CacheControl();
+        cacheControl.setPrivate(true);
+        if (maxAge > 0) {
+            cacheControl.setMaxAge(maxAge);
+        } else {
+            cacheControl.setNoCache(true);
+        }
+        // o padrao do JAX-RS inclui no-transform
+        cacheControl.setNoTransform(false);
+    }
+
+    static EntityTag etagDaEntidade(long id, long versao) {
+        return new EntityTag(id + "." + versao);
+    }
+
+    static EntityTag etagDaListagem(String estado, String variante) {
+        try {
+            byte[] resumo = MessageDigest.getInstance("SHA-256").digest(
+                    (estado + "|" + variante).getBytes(StandardCharsets.UTF_8));
+            return new EntityTag(Base64.getUrlEncoder().withoutPadding().encodeToString(resumo).substring(0, 22));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    // Versao esperada a partir do If-Match; null sem o cabecalho ou com "*". ETag fraca, mal formada ou de outro
+    // registro nunca corresponde a versao atual (412).
+    static Long versaoDoIfMatch(String ifMatch, long id) {
+        if (ifMatch == null || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String valor = ifMatch.trim();
+        String prefixo = "\"" + id + ".";
+        if (valor.startsWith(prefixo) && valor.endsWith("\"") && valor.length() > prefixo.length() + 1) {
+            // a variante (formato e codificacao) lida pelo cliente nao importa aqui
+            String versao = valor.substring(prefixo.length(), valor.length() - 1);
+            int fimDaVersao = versao.indexOf(SEPARADOR_DA_VARIANTE);
+            try {
+                return Long.valueOf(fimDaVersao >= 0 ? versao.substring(0, fimDaVersao) : versao);
+            } catch (NumberFormatException ex) {
+                // tratada abaixo
+            }
+        }
+        throw new WebApplicationException(Response.status(Response.Status.PRECONDITION_FAILED)
+                .entity(new ErrorMessage("If-Match nao corresponde a versao atual do registro.",
+                        Response.Status.PRECONDITION_FAILED.getStatusCode()))
+                .build());
+    }
+
+    // 304 quando a ETag ainda vale para o cliente; null caso contrario.
+    Response naoModificado(Request request, EntityTag etag) {
+        EntityTag etagDaVariante = daVariante(etag, variante(request));
+        Response.ResponseBuilder resposta = request.evaluatePreconditions(etagDaVariante);
+        return resposta == null ? null : cabecalhos(resposta, etagDaVariante).build();
+    }
+
+    Response.ResponseBuilder ok(Request request, Object entidade, EntityTag etag) {
+        Variant variante = variante(request);
+        Response.ResponseBuilder resposta = cabecalhos(Response.ok(entidade), daVariante(etag, variante));
+        if (variante != null) {
+            resposta.type(variante.getMediaType()).encoding(variante.getEncoding());
+        }
+        return resposta;
+    }
+
+    // A entidade so e obtida (e serializada) quando a ETag mudou.
+    Response responder(Request request, EntityTag etag, Supplier<?> entidade) {
+        Response naoModificado = naoModificado(request, etag);
+        return naoModificado != null ? naoModificado : ok(request, entidade.get(), etag).build();
+    }
+
+    // Dois valores de Vary, para que o EncodingFilter reconheca o seu e nao o repita.
+    private Response.ResponseBuilder cabecalhos(Response.ResponseBuilder resposta, EntityTag etag) {
+        return resposta.tag(etag).cacheControl(cacheControl)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT).header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+    }
+
+    // Formato pelo Accept, como na escolha do metodo pelo Jersey; null sem formato aceitavel (o Jersey responde 406).
+    private static Variant variante(Request request) {
+        Variant formato = request.selectVariant(FORMATOS);
+        return (formato == null) ? null : new Variant(formato.getMediaType(), (String) null, codificacao(request));
+    }
+
+    // A codificacao suportada de maior qualidade no Accept-Encoding ("*" vale para as duas; no empate, gzip);
+    // null, sem compressao, quando o cabecalho falta ou nenhuma das duas e aceita.
+    private static String codificacao(Request request) {
+        String aceitas = (request instanceof HttpHeaders)
+                ? ((HttpHeaders) request).getHeaderString(HttpHeaders.ACCEPT_ENCODING) : null;
+        if (aceitas == null) {
+            return null;
+        }
+        Map<String, Double> qualidades = new HashMap<>();
+        for (String item : aceitas.split(",")) {
+            String[] partes = item.split(";");
+            double qualidade = 1;
+            for (int i = 1; i < partes.length; i++) {
+                String parametro = partes[i].trim();
+                if (parametro.startsWith("q=")) {
+                    try {
+                        qualidade = Double.parseDouble(parametro.substring(2).trim());
+                    } catch (NumberFormatException ex) {
+                        qualidade = 0;
+                    }
+                }
+            }
+            qualidades.put(partes[0].trim().toLowerCase(Locale.ROOT), qualidade);
+        }
+        double qualquer = qualidades.getOrDefault("*", 0.0);
+        double gzip = qualidades.getOrDefault(GZIP, qualidades.getOrDefault("x-gzip", qualquer));
+        double deflate = qualidades.getOrDefault(DEFLATE, qualquer);
+        if (gzip <= 0 && deflate <= 0) {
+            return null;
+        }
+        return (gzip >= deflate) ? GZIP : DEFLATE;
+    }
+
+    private static EntityTag daVariante(EntityTag etag, Variant variante) {
+        if (variante == null) {
+            return etag;
+        }
+        StringBuilder valor = new StringBuilder(etag.getValue());
+        if (ProvedorSmile.APPLICATION_SMILE.equals(variante.getMediaType().toString())) {
+            valor.append(SEPARADOR_DA_VARIANTE).append("smile");
+        }
+        if (variante.getEncoding() != null) {
+            valor.append(SEPARADOR_DA_VARIANTE).append(variante.getEncoding());
+        }
+        return new EntityTag(valor.toString());
+    }
+
+}
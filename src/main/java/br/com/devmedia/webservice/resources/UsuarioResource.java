@@ -1,26 +1,50 @@
 package br.com.devmedia.webservice.resources;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import br.com.devmedia.webservice.domain.ErrorMessage;
 import br.com.devmedia.webservice.domain.Tipo;
 import br.com.devmedia.webservice.domain.Usuario;
 import br.com.devmedia.webservice.resources.filter.AcessoRestrito;
 import br.com.devmedia.webservice.service.UsuarioService;
 
+import javax.inject.Inject;
+import javax.inject.Singleton;
 import javax.ws.rs.*;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.ResourceContext;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
-import java.util.List;
 
 @Path("/usuarios")
+@Singleton
 @Consumes(MediaType.APPLICATION_JSON + ";charset=utf-8")
-@Produces(MediaType.APPLICATION_JSON + ";charset=utf-8")
+@Produces({MediaType.APPLICATION_JSON + ";charset=utf-8", ProvedorSmile.APPLICATION_SMILE})
 public class UsuarioResource {
 
-    private final UsuarioService usuarioService = new UsuarioService();
+    private static final Logger LOGGER = LoggerFactory.getLogger(UsuarioResource.class);
+
+    private static final long TEMPO_LIMITE_MS = ExecutorDeConsultas.tempoLimite("usuarios");
+    private static final RespostaCondicional RESPOSTA_CONDICIONAL = new RespostaCondicional("usuarios");
+
+    @Inject
+    private UsuarioService usuarioService;
+
+    @Inject
+    private ExecutorDeConsultas executorDeConsultas;
+
+    @Context
+    private ResourceContext resourceContext;
 
     @POST
     public Response cadastrarUsuario(Usuario usuario) {
-    	System.out.println(">>> Entrou em cadastrarUsuario >>>");
+        LOGGER.debug("cadastrarUsuario {}", usuario.getUsername());
         usuario = usuarioService.saveUsuario(usuario);
         if (usuario == null) {
             return Response.status(Response.Status.BAD_REQUEST)
@@ -35,23 +59,67 @@ public class UsuarioResource {
 
     @GET
     @AcessoRestrito({Tipo.FUNCIONARIO, Tipo.ADMINISTRADOR})
-    public List<Usuario> recuperarUsuarios() {
-        return usuarioService.getUsuarios();
+    public Response recuperarUsuarios(@Context Request request) {
+        EntityTag etag = RespostaCondicional.etagDaListagem(usuarioService.getEstadoDosUsuarios(), "usuarios");
+        return RESPOSTA_CONDICIONAL.responder(request, etag,
+                () -> new ListagemEmFluxo<>(Usuario.class, usuarioService::getUsuarios));
     }
 
     @GET
     @Path("{usuarioId}")
     @AcessoRestrito
-    public Usuario recuperarUsuario(@PathParam("usuarioId") long id) {
-        return usuarioService.getUsuario(id);
+    public void recuperarUsuario(@PathParam("usuarioId") long id, @Context Request request,
+            @Suspended AsyncResponse asyncResponse) {
+        executorDeConsultas.executar(asyncResponse, TEMPO_LIMITE_MS, () -> responderUsuario(id, request));
+    }
+
+    // com If-None-Match valido responde 304 apenas com a consulta da versao, sem carregar o usuario
+    private Response responderUsuario(long id, Request request) {
+        Long versao = usuarioService.getVersaoDoUsuario(id);
+        if (versao == null) {
+            return usuarioNaoEncontrado();
+        }
+        Response naoModificado = RESPOSTA_CONDICIONAL.naoModificado(request,
+                RespostaCondicional.etagDaEntidade(id, versao));
+        if (naoModificado != null) {
+            return naoModificado;
+        }
+        Usuario usuario = usuarioService.getUsuario(id);
+        if (usuario == null) {
+            // excluido entre as duas consultas
+            return usuarioNaoEncontrado();
+        }
+        return RESPOSTA_CONDICIONAL.ok(request, usuario, RespostaCondicional.etagDaEntidade(id, usuario.getVersao()))
+                .build();
+    }
+
+    private static Response usuarioNaoEncontrado() {
+        return Response.status(Response.Status.NOT_FOUND)
+                .entity(new ErrorMessage("Usuario nao encontrado.", Response.Status.NOT_FOUND.getStatusCode()))
+                .build();
     }
 
     @PUT
     @Path("{usuarioId}")
     @AcessoRestrito({Tipo.CLIENTE, Tipo.ADMINISTRADOR})
-    public Response atualizarUsuario(@PathParam("usuarioId") long id, Usuario usuario) {
-        usuarioService.updateUsuario(usuario, id);
-        return Response.noContent().build();
+    public Response atualizarUsuario(@PathParam("usuarioId") long id,
+            @HeaderParam(HttpHeaders.IF_MATCH) String ifMatch, Usuario usuario) {
+        Long versao = RespostaCondicional.versaoDoIfMatch(ifMatch, id);
+        Usuario atualizado = usuarioService.updateUsuario(usuario, id, versao);
+        return Response.noContent().tag(RespostaCondicional.etagDaEntidade(id, atualizado.getVersao())).build();
+    }
+
+    // alteracao parcial: os campos ausentes (ou nulos) no corpo permanecem como estao
+    @PATCH
+    @Path("{usuarioId}")
+    @Consumes({MediaType.APPLICATION_JSON, ImovelResource.APPLICATION_MERGE_PATCH_JSON})
+    @AcessoRestrito({Tipo.CLIENTE, Tipo.ADMINISTRADOR})
+    public Response corrigirUsuario(@PathParam("usuarioId") long id,
+            @HeaderParam(HttpHeaders.IF_MATCH) String ifMatch, @Context Request request, Usuario alteracoes) {
+        Long versao = RespostaCondicional.versaoDoIfMatch(ifMatch, id);
+        Usuario atualizado = usuarioService.patchUsuario(alteracoes, id, versao);
+        return RESPOSTA_CONDICIONAL.ok(request, atualizado,
+                RespostaCondicional.etagDaEntidade(id, atualizado.getVersao())).build();
     }
 
     @DELETE
@@ -64,9 +132,10 @@ public class UsuarioResource {
 
     // requisies do tipo: /exemplo/webapi/usuarios/usuarioId/imoveis
     // o jersey ir executar dentro do mtodo a ser executado dentro de ImovelResource
+    // (a mesma instncia em todas as requisies, ver ServicosDaAplicacao)
     @Path("{usuarioId}/imoveis")
     public ImovelResource obterImovelResource() {
-        return new ImovelResource();
+        return resourceContext.getResource(ImovelResource.class);
     }
 
 }
@@ -9,6 +9,10 @@ public class ConfiguracaoConsultaBean {
     private @QueryParam("nome") String nome;
     private @QueryParam("endereco") String endereco;
     private @QueryParam("direcionamento") String direcionamento;
+    private @QueryParam("valorMinimo") Double valorMinimo;
+    private @QueryParam("valorMaximo") Double valorMaximo;
+    private @QueryParam("ordenacao") String ordenacao;
+    private @QueryParam("after") String after;
 
     public int getOffset() {
         return offset;
@@ -49,4 +53,36 @@ public class ConfiguracaoConsultaBean {
     public void setDirecionamento(String direcionamento) {
         this.direcionamento = direcionamento;
     }
+
+    public Double getValorMinimo() {
+        return valorMinimo;
+    }
+
+    public void setValorMinimo(Double valorMinimo) {
+        this.valorMinimo = valorMinimo;
+    }
+
+    public Double getValorMaximo() {
+        return valorMaximo;
+    }
+
+    public void setValorMaximo(Double valorMaximo) {
+        this.valorMaximo = valorMaximo;
+    }
+
+    public String getOrdenacao() {
+        return ordenacao;
+    }
+
+    public void setOrdenacao(String ordenacao) {
+        this.ordenacao = ordenacao;
+    }
+
+    public String getAfter() {
+        return after;
+    }
+
+    public void setAfter(String after) {
+        this.after = after;
+    }
 }
@@ -0,0 +1,36 @@
+package br.com.devmedia.webservice.resources.beans;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+// Cursor opaco usado na paginacao por chave (keyset): guarda o id do ultimo registro da pagina anterior.
+// O cliente deve apenas repassar o valor recebido, sem interpreta-lo.
+
+public final class CursorDePaginacao {
+
+    private static final String PREFIXO = "id:";
+
+    private CursorDePaginacao() { }
+
+    public static String codificar(long ultimoId) {
+        byte[] dados = (PREFIXO + ultimoId).getBytes(StandardCharsets.US_ASCII);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(dados);
+    }
+
+    // Cursor vazio indica a primeira pagina.
+    public static long decodificar(String cursor) {
+        if (cursor.isEmpty()) {
+            return 0;
+        }
+        try {
+            String valor = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII);
+            if (!valor.startsWith(PREFIXO)) {
+                throw new IllegalArgumentException("Cursor invalido: " + cursor);
+            }
+            return Long.parseLong(valor.substring(PREFIXO.length()));
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("Cursor invalido: " + cursor, ex);
+        }
+    }
+
+}
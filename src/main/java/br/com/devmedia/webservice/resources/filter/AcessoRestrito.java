@@ -1,7 +1,5 @@
 package br.com.devmedia.webservice.resources.filter;
 
-import javax.ws.rs.NameBinding;
-
 import br.com.devmedia.webservice.domain.Tipo;
 
 import java.lang.annotation.Retention;
@@ -12,13 +10,13 @@ import static java.lang.annotation.ElementType.TYPE;
 import static java.lang.annotation.RetentionPolicy.RUNTIME;
 
 // 1. apenas os usurios autenticados tero acecsso aos mtodos marcados com esse atributo.
-// 2. Esta interface est marcada na classe AuthenticationFilter.
+// 2. Lida uma nica vez, na inicializao, por AcessoRestritoFeature, que registra o filtro de autenticao
+//    para os mtodos anotados (ou cujas classes foram anotadas).
 // 3. Informa que o valor default  um array com os trs tipos de usurios. Os parmetros devem ser
 //    passados quando da anotao nas classes e mtodos. Exemplo: @AcessoRestrito({Tipo.FUNCIONARIO, Tipo.ADMINISTRADOR})
 //    inidicando que apenas funcionrios e administrador tm acesso  funcionalidade. Se no for informado, 
 //    por default, os trs tipos de usurios podero acessar a funcionalidade.
 
-@NameBinding
 @Retention(RUNTIME)
 @Target({TYPE, METHOD})			// permite decorar classes e mtodos
 public @interface AcessoRestrito { 
@@ -0,0 +1,59 @@
+package br.com.devmedia.webservice.resources.filter;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.EnumSet;
+
+import javax.inject.Inject;
+import javax.ws.rs.container.DynamicFeature;
+import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.core.FeatureContext;
+import javax.ws.rs.ext.Provider;
+
+import br.com.devmedia.webservice.domain.Tipo;
+import br.com.devmedia.webservice.service.UsuarioService;
+
+// 1. Chamada pelo Jersey uma vez para cada metodo de recurso, na montagem do modelo da aplicacao (os metodos
+//    de sub-recursos, como ImovelResource, sao montados no primeiro acesso).
+// 2. Resolve as permissoes de @AcessoRestrito do metodo ou, se o metodo nao as informar, da classe, e registra
+//    para o metodo um AutenticacaoEAutorizacaoFilter com essas permissoes em um EnumSet.
+// 3. Resolve tambem o limite proprio do metodo (@LimiteDeRequisicoes do metodo ou da classe, ou a propriedade
+//    imoveis.limite.metodo.<Classe>.<metodo>), contado por usuario no mesmo filtro.
+
+@Provider
+public class AcessoRestritoFeature implements DynamicFeature {
+
+    @Inject
+    private UsuarioService usuarioService;
+
+    @Override
+    public void configure(ResourceInfo resourceInfo, FeatureContext context) {
+        AcessoRestrito doMetodo = resourceInfo.getResourceMethod().getAnnotation(AcessoRestrito.class);
+        AcessoRestrito daClasse = resourceInfo.getResourceClass().getAnnotation(AcessoRestrito.class);
+        if ((doMetodo == null) && (daClasse == null)) {
+            return;
+        }
+
+        EnumSet<Tipo> permissoes = EnumSet.noneOf(Tipo.class);
+        if (doMetodo != null) {
+            Collections.addAll(permissoes, doMetodo.value());
+        }
+        if (permissoes.isEmpty() && (daClasse != null)) {
+            Collections.addAll(permissoes, daClasse.value());
+        }
+        Method metodoDeRecurso = resourceInfo.getResourceMethod();
+        String metodo = resourceInfo.getResourceClass().getSimpleName() + "." + metodoDeRecurso.getName();
+        context.register(new AutenticacaoEAutorizacaoFilter(permissoes, limiteDoMetodo(resourceInfo, metodo), metodo,
+                usuarioService));
+    }
+
+    private static LimitadorDeRequisicoes.Limite limiteDoMetodo(ResourceInfo resourceInfo, String metodo) {
+        LimiteDeRequisicoes limite = resourceInfo.getResourceMethod().getAnnotation(LimiteDeRequisicoes.class);
+        if (limite == null) {
+            limite = resourceInfo.getResourceClass().getAnnotation(LimiteDeRequisicoes.class);
+        }
+        String padrao = (limite != null) ? limite.porSegundo() + "/" + limite.rajada() : "0";
+        return LimitadorDeRequisicoes.Limite.daPropriedade("imoveis.limite.metodo." + metodo, padrao);
+    }
+
+}
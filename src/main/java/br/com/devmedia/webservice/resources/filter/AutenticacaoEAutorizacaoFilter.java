@@ -1,21 +1,13 @@
 package br.com.devmedia.webservice.resources.filter;
 
 import java.io.IOException;
-import java.lang.reflect.AnnotatedElement;
-import java.lang.reflect.Method;
-import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.List;
-import java.util.StringTokenizer;
+import java.util.concurrent.RejectedExecutionException;
 
 import javax.ws.rs.container.ContainerRequestContext;
 import javax.ws.rs.container.ContainerRequestFilter;
-import javax.ws.rs.container.ResourceInfo;
-import javax.ws.rs.core.Context;
 import javax.ws.rs.core.Response;
-import javax.ws.rs.ext.Provider;
-
-import org.glassfish.jersey.internal.util.Base64;
 
 import br.com.devmedia.webservice.domain.ErrorMessage;
 import br.com.devmedia.webservice.domain.Tipo;
@@ -24,37 +16,78 @@ import br.com.devmedia.webservice.service.UsuarioService;
 
 // 1. Esta classe 'implements ContainerRequestFilter' permite a implementao do mtodo filter
 // 2. Recupar os dados de usurio e senha enviados no cabealho da requisio e verifica se so vlidos.
-// 3. ResourceInfo  uma interface da API Jax-Rs que nos permite recuperar a classe e o nome do recurso
-//    solicitado na requisio.
-// 4. Ao injetarmos o recurso com o @Context, estamos informando ao Jersey que ele deve injetar a instncia
-//    de ResourceInfo nesse atributo. Em outras palavras, com esse cdigo j temos como saber a classe do
-//    recurso e o mtodo que deve ser executado para atender a uma requisio.
-
-@Provider
-@AcessoRestrito
+// 3. Registrado por AcessoRestritoFeature: uma instncia por mtodo de recurso anotado com @AcessoRestrito,
+//    j com as permisses do mtodo (ou da classe) resolvidas na inicializao. Assim a autorizao no usa
+//    reflexo nem aloca listas a cada requisio.
+// 4. Limites (ver LimitadorDeRequisicoes): depois de algumas credenciais invlidas para o mesmo username a partir
+//    do mesmo endereo, as tentativas seguintes recebem 429 sem chegar ao banco nem ao hash da senha; o usurio
+//    autenticado tem o limite do seu tipo e, se houver, o limite prprio do mtodo.
+
 public class AutenticacaoEAutorizacaoFilter implements ContainerRequestFilter {
 
     private static final String AUTHORIZATION_HEADER = "Authorization";
-    private static final String BASIC_AUTHORIZATION_PREFIX = "Basic ";
-
-    private UsuarioService usuarioService = new UsuarioService();
+    private static final int TAMANHO_MAXIMO_USERNAME = 64;
+
+    private final EnumSet<Tipo> permissoes;
+    private final LimitadorDeRequisicoes.Limite limiteDoMetodo;
+    private final String metodo;
+    private final UsuarioService usuarioService;
+    private final LimitadorDeRequisicoes limitador = LimitadorDeRequisicoes.getInstancia();
+
+    public AutenticacaoEAutorizacaoFilter(EnumSet<Tipo> permissoes, LimitadorDeRequisicoes.Limite limiteDoMetodo,
+            String metodo, UsuarioService usuarioService) {
+        this.permissoes = permissoes;
+        this.limiteDoMetodo = limiteDoMetodo;
+        this.metodo = metodo;
+        this.usuarioService = usuarioService;
+    }
 
-    @Context
-    private ResourceInfo resourceInfo;
-    
     @Override
     public void filter(ContainerRequestContext requestContext) throws IOException {
         List<String> headersAutorizacao = requestContext.getHeaders().get(AUTHORIZATION_HEADER);
         if((headersAutorizacao != null) && (headersAutorizacao.size() > 0)) {
-            String dadosAutorizacao = headersAutorizacao.get(0);
-            Usuario usuarioDoHeader = obterUsuarioDoHeader(dadosAutorizacao);
-
-            Usuario usuarioAutenticado = usuarioService.autenticarUsuario(usuarioDoHeader);
+            // cabealho mal formado: tratado como credenciais invlidas (401)
+            CredenciaisBasic credenciais = CredenciaisBasic.doCabecalho(headersAutorizacao.get(0));
+            Usuario usuarioAutenticado = null;
+            if (credenciais != null) {
+                // a ficha de falha e reservada antes da verificacao, e nao depois dela: requisicoes simultaneas
+                // com a senha errada nao passam todas pelo limite antes que a primeira falha seja contada
+                String chaveDeFalhas = chaveDeFalhas(requestContext, credenciais.getUsername());
+                long espera = limitador.consumir(chaveDeFalhas, limitador.getLimiteDeFalhas(),
+                        LimitadorDeRequisicoes.Motivo.FALHAS);
+                if (espera > 0) {
+                    requestContext.abortWith(LimitadorDeRequisicoes.limiteExcedido(espera));
+                    return;
+                }
+                boolean verificado = false;
+                try {
+                    usuarioAutenticado = usuarioService.autenticarUsuario(credenciais.getUsername(),
+                            credenciais.getPassword());
+                    verificado = true;
+                } catch (RejectedExecutionException ex) {
+                    // verificador de senhas sobrecarregado: o cliente deve tentar novamente mais tarde
+                    requestContext.abortWith(Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                            .entity(new ErrorMessage("Servico temporariamente indisponivel. Tente novamente.",
+                                    Response.Status.SERVICE_UNAVAILABLE.getStatusCode()))
+                            .build());
+                    return;
+                } finally {
+                    if (!verificado) {
+                        limitador.devolver(chaveDeFalhas, limitador.getLimiteDeFalhas());
+                    }
+                }
+                if (usuarioAutenticado != null) {
+                    limitador.liberar(chaveDeFalhas);
+                }
+            }
             if (usuarioAutenticado != null) {
             	
-            	// Aqui significa que o usurio est autenticado. Logo, checar se o usurio tem a permisso
-            	// de acessar o recurso.
+            	// Aqui significa que o usurio est autenticado. Logo, checar se o usurio no excedeu os seus
+            	// limites e se tem a permisso de acessar o recurso.
             	
+            	if (limiteExcedido(requestContext, usuarioAutenticado)) {
+            		return;
+            	}
             	autorizarUsuario ( requestContext, usuarioAutenticado );
             	
                 return;
@@ -69,25 +102,30 @@ public class AutenticacaoEAutorizacaoFilter implements ContainerRequestFilter {
         requestContext.abortWith(naoAutorizado);
     }
 
-    private void autorizarUsuario(ContainerRequestContext requestContext, Usuario usuarioAutenticado) {
+    // O username vem do cliente: o que passa do tamanho maximo vira um resumo, para que usernames enormes nao
+    // ocupem o mapa do limitador.
+    private static String chaveDeFalhas(ContainerRequestContext requestContext, String username) {
+        String usuario = (username.length() <= TAMANHO_MAXIMO_USERNAME) ? username
+                : username.substring(0, TAMANHO_MAXIMO_USERNAME) + "#" + Integer.toHexString(username.hashCode());
+        return "falhas:" + requestContext.getProperty(LimiteDeRequisicoesFilter.PROPRIEDADE_ENDERECO) + ":" + usuario;
+    }
 
-    	// Exemplo: se uma requisio do tipo GET for enviado para /exemplo/webapi/usuarios/1/imoveis
-    	// o valor armazenado em classeDoRecurso ser a classe Imovelresource.
-    	
-    	Class<?> classeDoRecurso = resourceInfo.getResourceClass();	// recuperar a classe do recurso acessado
-    	List<Tipo> permissoesDaClasse = recuperarPermissoes(classeDoRecurso);	// recuperar a lista de permisses
-    	
-    	Method metodoDoRecurso = resourceInfo.getResourceMethod();
-    	List<Tipo> permissoesDoMetodo = recuperarPermissoes(metodoDoRecurso);
-    	
-    	try {
-            if (permissoesDoMetodo.isEmpty()) {
-                verificarPermissoes(permissoesDaClasse, requestContext, usuarioAutenticado);
-            } else {
-                verificarPermissoes(permissoesDoMetodo, requestContext, usuarioAutenticado);
-            }
+    private boolean limiteExcedido(ContainerRequestContext requestContext, Usuario usuario) {
+        long espera = limitador.consumir("usuario:" + usuario.getId(), limitador.getLimiteDoTipo(usuario.getTipo()),
+                LimitadorDeRequisicoes.Motivo.USUARIO);
+        if ((espera == 0) && (limiteDoMetodo != null)) {
+            espera = limitador.consumir("metodo:" + metodo + ":" + usuario.getId(), limiteDoMetodo,
+                    LimitadorDeRequisicoes.Motivo.METODO);
+        }
+        if (espera > 0) {
+            requestContext.abortWith(LimitadorDeRequisicoes.limiteExcedido(espera));
+            return true;
+        }
+        return false;
+    }
 
-        } catch (Exception ex) {
+    private void autorizarUsuario(ContainerRequestContext requestContext, Usuario usuarioAutenticado) {
+    	if (!temPermissao(requestContext, usuarioAutenticado)) {
         	// status 403 - FORBIDDEN
             requestContext.abortWith(
                     Response.status(Response.Status.FORBIDDEN)
@@ -95,25 +133,22 @@ public class AutenticacaoEAutorizacaoFilter implements ContainerRequestFilter {
                                     Response.Status.FORBIDDEN.getStatusCode()))
                             .build());
         }
-		
 	}
 
-    // AnnotatedElement  uma interface que pode receber qualquer elemento decorado com uma anotao (classe ou mtodo).
-    
-	private void verificarPermissoes(List<Tipo> permissoes, ContainerRequestContext requestContext,
-			Usuario usuario) throws Exception {
-		
-		if (permissoes.contains(usuario.getTipo())) {
-			long idUsuarioAcessado = recuperarIdDaURL(requestContext);
-			if ((Tipo.CLIENTE.equals(usuario.getTipo())) && (usuario.getId() == idUsuarioAcessado)) {
-				// Sevir para testar que usurio do tipo CLIENTE acesse apenas informaes a ele relacionadas.
-                return;
-            } else if (!Tipo.CLIENTE.equals(usuario.getTipo())) {
-                return;
-            }
+	private boolean temPermissao(ContainerRequestContext requestContext, Usuario usuario) {
+		if (!permissoes.contains(usuario.getTipo())) {
+			return false;
 		}
-		throw new Exception();
-		
+		if (Tipo.CLIENTE.equals(usuario.getTipo())) {
+			// Sevir para testar que usurio do tipo CLIENTE acesse apenas informaes a ele relacionadas.
+			try {
+				return usuario.getId() == recuperarIdDaURL(requestContext);
+			} catch (NumberFormatException ex) {
+				// id invlido na URL (ex.: /usuarios/abc/imoveis): acesso negado, como a um id de outro usurio
+				return false;
+			}
+		}
+		return true;
 	}
 
 	private long recuperarIdDaURL(ContainerRequestContext requestContext) {
@@ -129,27 +164,4 @@ public class AutenticacaoEAutorizacaoFilter implements ContainerRequestFilter {
 		
 	}
 
-	private List<Tipo> recuperarPermissoes(AnnotatedElement elementoAnotado) {
-
-		AcessoRestrito acessoRestrito = elementoAnotado.getAnnotation(AcessoRestrito.class);
-		if (acessoRestrito == null) {
-			// o elemento no recebeu a anotao.
-			return new ArrayList<Tipo>();	// lista vazia.
-		} else {
-			Tipo[] permissoes = acessoRestrito.value();		// recebe array de valores;
-			return Arrays.asList(permissoes);
-		}
-		
-	}
-
-	private Usuario obterUsuarioDoHeader(String dadosAutorizacao) {
-        dadosAutorizacao = dadosAutorizacao.replaceFirst(BASIC_AUTHORIZATION_PREFIX, "");
-        String dadosDecodificados = Base64.decodeAsString(dadosAutorizacao);
-        StringTokenizer dadosTokenizer = new StringTokenizer(dadosDecodificados,":");
-        Usuario usuario = new Usuario();
-        usuario.setUsername(dadosTokenizer.nextToken());
-        usuario.setPassword(dadosTokenizer.nextToken());
-        return usuario;
-    }
-
 }
@@ -0,0 +1,139 @@
+package br.com.devmedia.webservice.resources.filter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedMap;
+
+import org.glassfish.jersey.spi.ContentEncoder;
+
+// 1. Codificacoes gzip e deflate usadas pelo EncodingFilter do Jersey (ver CompressaoFeature).
+// 2. Os primeiros bytes da resposta ficam em memoria: se ela terminar antes de imoveis.compressao.limiarBytes
+//    (1024), sai sem compressao e sem o cabecalho Content-Encoding, ja que comprimir respostas pequenas custa
+//    CPU e quase nao reduz o trafego. Passando do limiar, tudo e comprimido com o nivel
+//    imoveis.compressao.nivel (1 a 9, padrao 6).
+
+public class CodificadorComLimiar extends ContentEncoder {
+
+    private static final int LIMIAR_BYTES = Integer.getInteger("imoveis.compressao.limiarBytes", 1024);
+    private static final int NIVEL = Integer.getInteger("imoveis.compressao.nivel", 6);
+
+    private static final String GZIP = "gzip";
+    private static final String X_GZIP = "x-gzip";
+    private static final String DEFLATE = "deflate";
+
+    public CodificadorComLimiar() {
+        super(GZIP, X_GZIP, DEFLATE);
+    }
+
+    @Override
+    public InputStream decode(String codificacao, InputStream entrada) throws IOException {
+        return DEFLATE.equals(codificacao) ? new InflaterInputStream(entrada) : new GZIPInputStream(entrada);
+    }
+
+    @Override
+    public OutputStream encode(String codificacao, OutputStream saida) {
+        return new SaidaComLimiar(codificacao, saida);
+    }
+
+    static final class SaidaComLimiar extends OutputStream {
+
+        private final String codificacao;
+        private final OutputStream destino;
+
+        private byte[] inicio = new byte[LIMIAR_BYTES];
+        private int tamanho;
+        private OutputStream comprimida;
+        private MultivaluedMap<String, Object> cabecalhos;
+
+        private SaidaComLimiar(String codificacao, OutputStream destino) {
+            this.codificacao = codificacao;
+            this.destino = destino;
+        }
+
+        // Sem os cabecalhos (interceptor nao registrado) a resposta e sempre comprimida, como anunciado.
+        void setCabecalhos(MultivaluedMap<String, Object> cabecalhos) {
+            this.cabecalhos = cabecalhos;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (comprimida == null && tamanho < inicio.length) {
+                inicio[tamanho++] = (byte) b;
+            } else {
+                comprimir().write(b);
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (comprimida == null && tamanho + len <= inicio.length) {
+                System.arraycopy(b, off, inicio, tamanho, len);
+                tamanho += len;
+            } else {
+                comprimir().write(b, off, len);
+            }
+        }
+
+        // enquanto o limiar nao e atingido nada e enviado: os cabecalhos ainda podem mudar
+        @Override
+        public void flush() throws IOException {
+            if (comprimida != null) {
+                comprimida.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (comprimida == null && cabecalhos != null) {
+                cabecalhos.remove(HttpHeaders.CONTENT_ENCODING);
+                destino.write(inicio, 0, tamanho);
+                destino.close();
+            } else {
+                comprimir().close();
+            }
+        }
+
+        private OutputStream comprimir() throws IOException {
+            if (comprimida == null) {
+                comprimida = DEFLATE.equals(codificacao) ? new SaidaDeflate(destino) : new SaidaGzip(destino);
+                comprimida.write(inicio, 0, tamanho);
+                inicio = null;
+            }
+            return comprimida;
+        }
+    }
+
+    private static final class SaidaGzip extends GZIPOutputStream {
+
+        private SaidaGzip(OutputStream destino) throws IOException {
+            super(destino, 8192);
+            def.setLevel(NIVEL);
+        }
+    }
+
+    private static final class SaidaDeflate extends DeflaterOutputStream {
+
+        private SaidaDeflate(OutputStream destino) {
+            super(destino, new Deflater(NIVEL), 8192);
+        }
+
+        // o Deflater foi criado aqui, entao e liberado aqui
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                def.end();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,41 @@
+package br.com.devmedia.webservice.resources.filter;
+
+import java.io.IOException;
+
+import javax.ws.rs.Priorities;
+import javax.ws.rs.core.Feature;
+import javax.ws.rs.core.FeatureContext;
+import javax.ws.rs.ext.Provider;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+
+import org.glassfish.jersey.server.filter.EncodingFilter;
+
+// Compressao das respostas conforme o Accept-Encoding do cliente: o EncodingFilter do Jersey escolhe a
+// codificacao (e inclui "Vary: Accept-Encoding") e o CodificadorComLimiar comprime, apenas as respostas
+// maiores que o limiar. O interceptor abaixo roda logo depois do codificador e entrega a saida os cabecalhos
+// da resposta, para que o Content-Encoding possa ser retirado quando a resposta nao chega ao limiar.
+
+@Provider
+public class CompressaoFeature implements Feature {
+
+    @Override
+    public boolean configure(FeatureContext context) {
+        context.register(EncodingFilter.class);
+        context.register(CodificadorComLimiar.class, Priorities.ENTITY_CODER);
+        context.register(LimiarDeCompressaoInterceptor.class, Priorities.ENTITY_CODER + 1);
+        return true;
+    }
+
+    public static final class LimiarDeCompressaoInterceptor implements WriterInterceptor {
+
+        @Override
+        public void aroundWriteTo(WriterInterceptorContext context) throws IOException {
+            if (context.getOutputStream() instanceof CodificadorComLimiar.SaidaComLimiar) {
+                ((CodificadorComLimiar.SaidaComLimiar) context.getOutputStream()).setCabecalhos(context.getHeaders());
+            }
+            context.proceed();
+        }
+    }
+
+}
@@ -0,0 +1,99 @@
+package br.com.devmedia.webservice.resources.filter;
+
+import java.io.IOException;
+
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.container.PreMatching;
+import javax.ws.rs.core.Cookie;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.NewCookie;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.Provider;
+
+import org.glassfish.jersey.server.monitoring.ApplicationEvent;
+import org.glassfish.jersey.server.monitoring.ApplicationEventListener;
+import org.glassfish.jersey.server.monitoring.RequestEvent;
+import org.glassfish.jersey.server.monitoring.RequestEventListener;
+
+import br.com.devmedia.webservice.dao.ContextoDePersistencia;
+import br.com.devmedia.webservice.dao.ReplicasDeLeitura;
+
+// 1. No inicio da requisicao verifica se a thread ainda carrega um contexto de persistencia de uma
+//    requisicao anterior (vazamento).
+// 2. Ao fim da requisicao (evento FINISHED do Jersey, emitido depois da escrita da resposta e tambem quando uma
+//    excecao sem ExceptionMapper impede os filtros de resposta) fecha o EntityManager compartilhado pelos DAOs,
+//    devolvendo a conexao ao pool. O evento vem na thread que concluiu a resposta: a do container ou, nos
+//    recursos assincronos, a da tarefa (ver ExecutorDeConsultas, que fecha o contexto de cada uma das threads).
+// 3. Com replicas de leitura configuradas, as requisicoes que gravam (metodos que nao sejam GET, HEAD ou
+//    OPTIONS) leem apenas do banco principal e, quando bem-sucedidas, devolvem o cookie imoveis_escrita.
+//    Enquanto ele valer (imoveis.replicas.janelaAposEscritaSegundos), as leituras do mesmo cliente tambem vao
+//    para o principal, que ja tem as alteracoes que uma replica talvez ainda nao tenha recebido.
+
+@Provider
+@PreMatching
+public class ContextoDePersistenciaFilter implements ContainerRequestFilter, ContainerResponseFilter,
+        ApplicationEventListener {
+
+    private static final String COOKIE_ESCRITA = "imoveis_escrita";
+    private static final int JANELA_APOS_ESCRITA_S =
+            Integer.getInteger("imoveis.replicas.janelaAposEscritaSegundos", 10);
+
+    private static final RequestEventListener FECHAMENTO = evento -> {
+        if (evento.getType() == RequestEvent.Type.FINISHED) {
+            ContextoDePersistencia.fechar();
+        }
+    };
+
+    @Override
+    public void filter(ContainerRequestContext requestContext) throws IOException {
+        ContextoDePersistencia.verificarVazamento(
+                requestContext.getMethod() + " " + requestContext.getUriInfo().getPath());
+
+        if (ReplicasDeLeitura.getInstancia().isConfigurada()
+                && (grava(requestContext) || escritaRecente(requestContext.getCookies().get(COOKIE_ESCRITA)))) {
+            ContextoDePersistencia.fixarLeiturasNoPrincipal();
+        }
+    }
+
+    @Override
+    public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext)
+            throws IOException {
+        if (ReplicasDeLeitura.getInstancia().isConfigurada() && grava(requestContext)
+                && (responseContext.getStatusInfo().getFamily() == Response.Status.Family.SUCCESSFUL)) {
+            NewCookie cookie = new NewCookie(COOKIE_ESCRITA, Long.toString(System.currentTimeMillis()),
+                    requestContext.getUriInfo().getBaseUri().getPath(), null, null, JANELA_APOS_ESCRITA_S, false, true);
+            responseContext.getHeaders().add(HttpHeaders.SET_COOKIE, cookie);
+        }
+    }
+
+    // apenas os eventos de cada requisicao interessam (onRequest)
+    @Override
+    public void onEvent(ApplicationEvent evento) { }
+
+    @Override
+    public RequestEventListener onRequest(RequestEvent evento) {
+        return FECHAMENTO;
+    }
+
+    private static boolean grava(ContainerRequestContext requestContext) {
+        String metodo = requestContext.getMethod();
+        return !HttpMethod.GET.equals(metodo) && !HttpMethod.HEAD.equals(metodo) && !HttpMethod.OPTIONS.equals(metodo);
+    }
+
+    // o instante da escrita tambem e conferido aqui, para os clientes que ignoram o Max-Age
+    private static boolean escritaRecente(Cookie cookie) {
+        if (cookie == null) {
+            return false;
+        }
+        try {
+            return System.currentTimeMillis() - Long.parseLong(cookie.getValue()) < JANELA_APOS_ESCRITA_S * 1000L;
+        } catch (NumberFormatException ex) {
+            return false;
+        }
+    }
+
+}
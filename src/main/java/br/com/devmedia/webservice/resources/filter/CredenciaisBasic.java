@@ -0,0 +1,106 @@
+package br.com.devmedia.webservice.resources.filter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// 1. Usuario e senha enviados no cabecalho "Authorization: Basic <base64(usuario:senha)>".
+// 2. A decodificacao e feita em um buffer reaproveitado por thread, sem expressoes regulares nem objetos
+//    intermediarios: as unicas alocacoes sao as duas Strings e a propria instancia.
+// 3. A senha pode conter ':' (a separacao e feita no primeiro ':'). Cabecalhos mal formados resultam em null.
+
+public final class CredenciaisBasic {
+
+    private static final String ESQUEMA = "Basic ";
+    private static final int TAMANHO_MAXIMO = 4096;
+
+    private static final byte[] VALORES = new byte[128];
+    static {
+        Arrays.fill(VALORES, (byte) -1);
+        String alfabeto = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        for (int i = 0; i < alfabeto.length(); i++) {
+            VALORES[alfabeto.charAt(i)] = (byte) i;
+        }
+    }
+
+    private static final ThreadLocal<byte[]> BUFFER = ThreadLocal.withInitial(() -> new byte[TAMANHO_MAXIMO / 4 * 3]);
+
+    private final String username;
+    private final String password;
+
+    private CredenciaisBasic(String username, String password) {
+        this.username = username;
+        this.password = password;
+    }
+
+    public static CredenciaisBasic doCabecalho(String cabecalho) {
+        if ((cabecalho == null) || !cabecalho.regionMatches(true, 0, ESQUEMA, 0, ESQUEMA.length())) {
+            return null;
+        }
+        int inicio = ESQUEMA.length();
+        int fim = cabecalho.length();
+        while ((inicio < fim) && (cabecalho.charAt(inicio) == ' ')) {
+            inicio++;
+        }
+        while ((fim > inicio) && (cabecalho.charAt(fim - 1) == ' ')) {
+            fim--;
+        }
+
+        byte[] buffer = BUFFER.get();
+        int tamanho = decodificar(cabecalho, inicio, fim, buffer);
+        if (tamanho < 0) {
+            return null;
+        }
+        for (int i = 0; i < tamanho; i++) {
+            if (buffer[i] == ':') {
+                return new CredenciaisBasic(new String(buffer, 0, i, StandardCharsets.UTF_8),
+                        new String(buffer, i + 1, tamanho - i - 1, StandardCharsets.UTF_8));
+            }
+        }
+        return null;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    // Base64 padrao (RFC 4648, com '=' obrigatorio no final). Retorna o numero de bytes decodificados ou -1.
+    private static int decodificar(String texto, int inicio, int fim, byte[] destino) {
+        int tamanho = fim - inicio;
+        if ((tamanho == 0) || (tamanho % 4 != 0) || (tamanho > TAMANHO_MAXIMO)) {
+            return -1;
+        }
+        int preenchimento = 0;
+        if (texto.charAt(fim - 1) == '=') {
+            preenchimento = texto.charAt(fim - 2) == '=' ? 2 : 1;
+        }
+
+        int escrito = 0;
+        for (int i = inicio; i < fim; i += 4) {
+            boolean ultimoBloco = i + 4 == fim;
+            int bloco = 0;
+            for (int j = 0; j < 4; j++) {
+                char c = texto.charAt(i + j);
+                int valor;
+                if (ultimoBloco && (j >= 4 - preenchimento)) {
+                    valor = 0;
+                } else if ((c >= 128) || ((valor = VALORES[c]) < 0)) {
+                    return -1;
+                }
+                bloco = (bloco << 6) | valor;
+            }
+            destino[escrito++] = (byte) (bloco >> 16);
+            if (!ultimoBloco || (preenchimento < 2)) {
+                destino[escrito++] = (byte) (bloco >> 8);
+            }
+            if (!ultimoBloco || (preenchimento < 1)) {
+                destino[escrito++] = (byte) bloco;
+            }
+        }
+        return escrito;
+    }
+
+}
@@ -0,0 +1,188 @@
+package br.com.devmedia.webservice.resources.filter;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+
+import br.com.devmedia.webservice.domain.ErrorMessage;
+import br.com.devmedia.webservice.domain.Tipo;
+
+// 1. Balde de fichas por chave (endereco do cliente, usuario, usuario + metodo), implementado como GCRA: cada
+//    chave guarda apenas o instante teorico da proxima chegada, atualizado com um compareAndSet, sem locks.
+//    O mapa de chaves e um ConcurrentHashMap (particionado internamente), e uma chave cujo balde ja encheu de
+//    novo equivale a uma chave ausente; por isso as chaves antigas sao descartadas quando o mapa chega a
+//    imoveis.limite.maximoChaves (no maximo uma varredura por segundo). Se ainda assim nao houver espaco, a
+//    chave nova nao e rastreada: a requisicao segue sem esse limite e e contada em getChavesNaoRastreadas.
+// 2. Limites no formato "taxa/rajada" (requisicoes por segundo / requisicoes seguidas permitidas); "0" desliga
+//    o limite. Propriedades de sistema: imoveis.limite.ip, imoveis.limite.tipo.<TIPO> (por usuario autenticado),
+//    imoveis.limite.falhas (credenciais invalidas por endereco e username) e imoveis.limite.metodo.<Classe>.<metodo>
+//    (sobrescreve @LimiteDeRequisicoes).
+
+public final class LimitadorDeRequisicoes {
+
+    public enum Motivo { ENDERECO, USUARIO, METODO, FALHAS }
+
+    private static final int TOO_MANY_REQUESTS = 429;
+    private static final long INTERVALO_DE_LIMPEZA_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private static final LimitadorDeRequisicoes INSTANCIA = new LimitadorDeRequisicoes(
+            Integer.getInteger("imoveis.limite.maximoChaves", 100000));
+
+    private final int maximoChaves;
+    private final ConcurrentHashMap<String, AtomicLong> proximasChegadas = new ConcurrentHashMap<>();
+    private final AtomicBoolean limpando = new AtomicBoolean();
+    private final AtomicLong proximaLimpeza = new AtomicLong(System.nanoTime());
+    private final LongAdder chavesNaoRastreadas = new LongAdder();
+
+    private final Limite limitePorEndereco = Limite.daPropriedade("imoveis.limite.ip", "50/100");
+    private final Limite limiteDeFalhas = Limite.daPropriedade("imoveis.limite.falhas", "0.1/5");
+    private final Map<Tipo, Limite> limitesPorTipo = new EnumMap<>(Tipo.class);
+    private final Map<Motivo, LongAdder> rejeicoes = new EnumMap<>(Motivo.class);
+
+    private LimitadorDeRequisicoes(int maximoChaves) {
+        this.maximoChaves = maximoChaves;
+        limitesPorTipo.put(Tipo.CLIENTE, Limite.daPropriedade("imoveis.limite.tipo.CLIENTE", "10/20"));
+        limitesPorTipo.put(Tipo.FUNCIONARIO, Limite.daPropriedade("imoveis.limite.tipo.FUNCIONARIO", "25/50"));
+        limitesPorTipo.put(Tipo.ADMINISTRADOR, Limite.daPropriedade("imoveis.limite.tipo.ADMINISTRADOR", "50/100"));
+        for (Motivo motivo : Motivo.values()) {
+            rejeicoes.put(motivo, new LongAdder());
+        }
+    }
+
+    public static LimitadorDeRequisicoes getInstancia() {
+        return INSTANCIA;
+    }
+
+    // Consome uma ficha. Retorna 0 quando a requisicao pode seguir, ou a espera (ns) ate a proxima ficha.
+    public long consumir(String chave, Limite limite, Motivo motivo) {
+        if (limite == null) {
+            return 0;
+        }
+        long agora = System.nanoTime();
+        AtomicLong proximaChegada = proximaChegada(chave, agora);
+        if (proximaChegada == null) {
+            chavesNaoRastreadas.increment();
+            return 0;
+        }
+        while (true) {
+            long atual = proximaChegada.get();
+            long base = (atual - agora > 0) ? atual : agora;
+            long espera = base - limite.toleranciaNanos - agora;
+            if (espera > 0) {
+                rejeicoes.get(motivo).increment();
+                return espera;
+            }
+            if (proximaChegada.compareAndSet(atual, base + limite.intervaloNanos)) {
+                return 0;
+            }
+        }
+    }
+
+    // Devolve uma ficha consumida por uma requisicao que acabou nao sendo atendida.
+    public void devolver(String chave, Limite limite) {
+        AtomicLong proximaChegada = (limite != null) ? proximasChegadas.get(chave) : null;
+        if (proximaChegada != null) {
+            proximaChegada.addAndGet(-limite.intervaloNanos);
+        }
+    }
+
+    public void liberar(String chave) {
+        proximasChegadas.remove(chave);
+    }
+
+    public Limite getLimitePorEndereco() {
+        return limitePorEndereco;
+    }
+
+    public Limite getLimiteDeFalhas() {
+        return limiteDeFalhas;
+    }
+
+    public Limite getLimiteDoTipo(Tipo tipo) {
+        return limitesPorTipo.get(tipo);
+    }
+
+    public long getRejeicoes(Motivo motivo) {
+        return rejeicoes.get(motivo).sum();
+    }
+
+    public int getChaves() {
+        return proximasChegadas.size();
+    }
+
+    public long getChavesNaoRastreadas() {
+        return chavesNaoRastreadas.sum();
+    }
+
+    // 429 com Retry-After em segundos inteiros, arredondados para cima.
+    static Response limiteExcedido(long esperaNanos) {
+        long segundos = Math.max(1, (esperaNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+        return Response.status(TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, segundos)
+                .entity(new ErrorMessage("Limite de requisicoes excedido. Tente novamente em " + segundos + " s.",
+                        TOO_MANY_REQUESTS))
+                .build();
+    }
+
+    // null quando o mapa esta cheio e a chave nao pode ser rastreada.
+    private AtomicLong proximaChegada(String chave, long agora) {
+        AtomicLong proximaChegada = proximasChegadas.get(chave);
+        if (proximaChegada != null) {
+            return proximaChegada;
+        }
+        if (proximasChegadas.size() >= maximoChaves) {
+            long limpeza = proximaLimpeza.get();
+            if ((agora - limpeza >= 0) && proximaLimpeza.compareAndSet(limpeza, agora + INTERVALO_DE_LIMPEZA_NANOS)
+                    && limpando.compareAndSet(false, true)) {
+                try {
+                    proximasChegadas.values().removeIf(chegada -> chegada.get() - agora <= 0);
+                } finally {
+                    limpando.set(false);
+                }
+            }
+            if (proximasChegadas.size() >= maximoChaves) {
+                return proximasChegadas.get(chave);
+            }
+        }
+        return proximasChegadas.computeIfAbsent(chave, nova -> new AtomicLong(agora));
+    }
+
+    public static final class Limite {
+
+        private final long intervaloNanos;
+        private final long toleranciaNanos;
+
+        private Limite(double porSegundo, int rajada) {
+            this.intervaloNanos = (long) (TimeUnit.SECONDS.toNanos(1) / porSegundo);
+            this.toleranciaNanos = intervaloNanos * (Math.max(rajada, 1) - 1);
+        }
+
+        // null quando o limite estiver desligado
+        public static Limite de(double porSegundo, int rajada) {
+            return (porSegundo > 0) ? new Limite(porSegundo, rajada) : null;
+        }
+
+        public static Limite daPropriedade(String propriedade, String padrao) {
+            String valor = System.getProperty(propriedade, padrao).trim();
+            try {
+                int separador = valor.indexOf('/');
+                if (separador < 0) {
+                    double porSegundo = Double.parseDouble(valor);
+                    return de(porSegundo, (int) Math.ceil(porSegundo));
+                }
+                return de(Double.parseDouble(valor.substring(0, separador)),
+                        Integer.parseInt(valor.substring(separador + 1).trim()));
+            } catch (NumberFormatException ex) {
+                throw new IllegalArgumentException("Limite invalido em " + propriedade + ": " + valor, ex);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,22 @@
+package br.com.devmedia.webservice.resources.filter;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+// 1. Limite proprio de um metodo (ou de todos os metodos de uma classe) com @AcessoRestrito, contado por usuario
+//    e somado ao limite geral do tipo do usuario. Exemplo: @LimiteDeRequisicoes(porSegundo = 0.5, rajada = 2)
+// 2. Lido uma unica vez, na inicializacao, por AcessoRestritoFeature; a propriedade de sistema
+//    imoveis.limite.metodo.<Classe>.<metodo> ("taxa/rajada", ou "0" para desligar) tem precedencia.
+
+@Retention(RUNTIME)
+@Target({TYPE, METHOD})
+public @interface LimiteDeRequisicoes {
+
+    double porSegundo();
+
+    int rajada() default 1;
+}
@@ -0,0 +1,55 @@
+package br.com.devmedia.webservice.resources.filter;
+
+import java.io.IOException;
+
+import javax.annotation.Priority;
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.ext.Provider;
+
+// 1. Limite por endereco do cliente em todos os metodos de recurso, inclusive os publicos (ex.: cadastro de
+//    usuarios), antes da autenticacao: um cliente que excede o limite recebe 429 sem chegar ao banco.
+// 2. O endereco fica na requisicao (PROPRIEDADE_ENDERECO) para o AutenticacaoEAutorizacaoFilter, que conta as
+//    credenciais invalidas por endereco e username.
+// 3. Atras de um proxy reverso, -Dimoveis.limite.usarXForwardedFor=true usa o ultimo endereco de
+//    X-Forwarded-For (o acrescentado pelo proxy, que o cliente nao controla).
+
+@Provider
+@Priority(Priorities.AUTHENTICATION)
+public class LimiteDeRequisicoesFilter implements ContainerRequestFilter {
+
+    static final String PROPRIEDADE_ENDERECO = LimiteDeRequisicoesFilter.class.getName() + ".endereco";
+
+    private static final boolean USAR_X_FORWARDED_FOR = Boolean.getBoolean("imoveis.limite.usarXForwardedFor");
+
+    private final LimitadorDeRequisicoes limitador = LimitadorDeRequisicoes.getInstancia();
+
+    @Context
+    private HttpServletRequest servletRequest;
+
+    @Override
+    public void filter(ContainerRequestContext requestContext) throws IOException {
+        String endereco = enderecoDoCliente(requestContext);
+        requestContext.setProperty(PROPRIEDADE_ENDERECO, endereco);
+
+        long espera = limitador.consumir("ip:" + endereco, limitador.getLimitePorEndereco(),
+                LimitadorDeRequisicoes.Motivo.ENDERECO);
+        if (espera > 0) {
+            requestContext.abortWith(LimitadorDeRequisicoes.limiteExcedido(espera));
+        }
+    }
+
+    private String enderecoDoCliente(ContainerRequestContext requestContext) {
+        if (USAR_X_FORWARDED_FOR) {
+            String encaminhado = requestContext.getHeaderString("X-Forwarded-For");
+            if ((encaminhado != null) && !encaminhado.trim().isEmpty()) {
+                return encaminhado.substring(encaminhado.lastIndexOf(',') + 1).trim();
+            }
+        }
+        return (servletRequest != null) ? servletRequest.getRemoteAddr() : "";
+    }
+
+}
@@ -0,0 +1,57 @@
+package br.com.devmedia.webservice.resources.filter;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.DynamicFeature;
+import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.core.FeatureContext;
+import javax.ws.rs.ext.Provider;
+
+import br.com.devmedia.webservice.metricas.MetricasDoMetodo;
+import br.com.devmedia.webservice.metricas.RegistroDeMetricas;
+
+// Cria, na inicializacao, as metricas de cada metodo de recurso e registra para o metodo um filtro que apenas
+// anota a requisicao com elas (ver MetricasListener). O filtro roda antes da autenticacao, para que as
+// respostas 401 e 403 tambem sejam contadas no metodo.
+
+@Provider
+public class MetricasFeature implements DynamicFeature {
+
+    @Override
+    public void configure(ResourceInfo resourceInfo, FeatureContext context) {
+        Method metodo = resourceInfo.getResourceMethod();
+        String recurso = resourceInfo.getResourceClass().getSimpleName() + "." + metodo.getName();
+        MetricasDoMetodo metricas = RegistroDeMetricas.getInstancia().metodo(metodoHttp(metodo), recurso);
+        context.register(new MarcadorDeMetodoFilter(metricas), Priorities.AUTHENTICATION - 1);
+    }
+
+    private static String metodoHttp(Method metodo) {
+        for (Annotation anotacao : metodo.getAnnotations()) {
+            HttpMethod httpMethod = anotacao.annotationType().getAnnotation(HttpMethod.class);
+            if (httpMethod != null) {
+                return httpMethod.value();
+            }
+        }
+        return "";
+    }
+
+    private static final class MarcadorDeMetodoFilter implements ContainerRequestFilter {
+
+        private final MetricasDoMetodo metricas;
+
+        private MarcadorDeMetodoFilter(MetricasDoMetodo metricas) {
+            this.metricas = metricas;
+        }
+
+        @Override
+        public void filter(ContainerRequestContext requestContext) {
+            requestContext.setProperty(MetricasListener.PROPRIEDADE_METODO, metricas);
+        }
+    }
+
+}
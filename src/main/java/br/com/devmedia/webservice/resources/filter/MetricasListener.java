@@ -0,0 +1,65 @@
+package br.com.devmedia.webservice.resources.filter;
+
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.Provider;
+
+import org.glassfish.jersey.server.ContainerResponse;
+import org.glassfish.jersey.server.monitoring.ApplicationEvent;
+import org.glassfish.jersey.server.monitoring.ApplicationEventListener;
+import org.glassfish.jersey.server.monitoring.RequestEvent;
+import org.glassfish.jersey.server.monitoring.RequestEventListener;
+
+import br.com.devmedia.webservice.metricas.MetricasDoMetodo;
+import br.com.devmedia.webservice.metricas.RegistroDeMetricas;
+
+// 1. Acompanha cada requisicao pelos eventos do Jersey: no inicio (onRequest) ela entra nas requisicoes em
+//    andamento; ao fim (FINISHED) sai delas e registra a latencia e o codigo de status nas metricas do metodo de
+//    recurso atendido (anotado na requisicao por MetricasFeature) ou em "nao_mapeado".
+// 2. O evento FINISHED e emitido para toda requisicao, inclusive quando uma excecao sem ExceptionMapper impede os
+//    filtros de resposta (contada como 500) e nos recursos assincronos, na thread que concluiu a resposta.
+// 3. A latencia vai ate o fim da escrita da resposta, incluindo o corpo das respostas escritas em fluxo.
+// 4. O metodo e guardado no acompanhamento assim que aparece nas propriedades da requisicao: nos recursos
+//    assincronos as propriedades (atributos da requisicao do servlet) ja nao existem quando o FINISHED chega.
+
+@Provider
+public class MetricasListener implements ApplicationEventListener {
+
+    static final String PROPRIEDADE_METODO = MetricasListener.class.getName() + ".metodo";
+
+    private final RegistroDeMetricas registro = RegistroDeMetricas.getInstancia();
+
+    // apenas os eventos de cada requisicao interessam (onRequest)
+    @Override
+    public void onEvent(ApplicationEvent evento) { }
+
+    @Override
+    public RequestEventListener onRequest(RequestEvent evento) {
+        registro.iniciarRequisicao();
+        return new Acompanhamento();
+    }
+
+    private final class Acompanhamento implements RequestEventListener {
+
+        private final long inicio = System.nanoTime();
+        private MetricasDoMetodo metodo;
+
+        @Override
+        public void onEvent(RequestEvent evento) {
+            if (evento.getType() != RequestEvent.Type.FINISHED) {
+                if (metodo == null) {
+                    metodo = (MetricasDoMetodo) evento.getContainerRequest().getProperty(PROPRIEDADE_METODO);
+                }
+                return;
+            }
+            registro.concluirRequisicao();
+
+            MetricasDoMetodo metricas = (metodo != null) ? metodo
+                    : registro.naoMapeado(evento.getContainerRequest().getMethod());
+            ContainerResponse response = evento.getContainerResponse();
+            int status = (response != null) ? response.getStatus()
+                    : Response.Status.INTERNAL_SERVER_ERROR.getStatusCode();
+            metricas.registrar(status, System.nanoTime() - inicio);
+        }
+    }
+
+}
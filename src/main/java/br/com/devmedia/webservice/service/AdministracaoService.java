@@ -0,0 +1,31 @@
+package br.com.devmedia.webservice.service;
+
+import br.com.devmedia.webservice.dao.CacheDeEntidades;
+import br.com.devmedia.webservice.dao.MonitorDeSql;
+import br.com.devmedia.webservice.dao.ReplicasDeLeitura;
+import br.com.devmedia.webservice.domain.EstadoReplica;
+import br.com.devmedia.webservice.domain.EstatisticasRegiaoCache;
+import br.com.devmedia.webservice.domain.EstatisticasSql;
+
+import java.util.List;
+
+public class AdministracaoService {
+
+    public List<EstatisticasRegiaoCache> getEstatisticasCacheDeEntidades() {
+        return CacheDeEntidades.obterEstatisticas();
+    }
+
+    public EstatisticasSql getEstatisticasSql() {
+        MonitorDeSql monitor = MonitorDeSql.getInstancia();
+        return new EstatisticasSql(monitor.obterEstatisticas(), monitor.obterEstatisticasDasConsultas());
+    }
+
+    public void limparEstatisticasSql() {
+        MonitorDeSql.getInstancia().limpar();
+    }
+
+    public List<EstadoReplica> getEstadoDasReplicas() {
+        return ReplicasDeLeitura.getInstancia().obterEstado();
+    }
+
+}
@@ -0,0 +1,171 @@
+package br.com.devmedia.webservice.service;
+
+import br.com.devmedia.webservice.domain.EstatisticasCache;
+import br.com.devmedia.webservice.domain.Usuario;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// 1. Guarda os usuarios ja autenticados, evitando que cada requisicao a um recurso @AcessoRestrito
+//    execute a consulta de username e senha no banco de dados.
+// 2. A chave e o SHA-256 das credenciais decodificadas; a senha em texto puro nunca fica em memoria.
+// 3. As entradas expiram apos o TTL e, quando a capacidade e atingida, a menos usada recentemente e descartada.
+// 4. Configuracao (propriedades de sistema): imoveis.autenticacao.cache.capacidade e
+//    imoveis.autenticacao.cache.ttlSegundos.
+// 5. Uma autenticacao pode ler o usuario do banco antes de uma alteracao de senha ou tipo e so armazena-lo
+//    depois da invalidacao (a verificacao da senha e lenta). Cada invalidacao avanca uma geracao e registra a
+//    geracao do usuario; quem autentica obtem a geracao antes de ler o banco, e armazenar descarta o usuario
+//    invalidado depois dessa leitura, que de outro modo valeria ate o fim do TTL.
+
+public class CacheDeAutenticacao {
+
+    private static final CacheDeAutenticacao INSTANCIA = new CacheDeAutenticacao(
+            Integer.getInteger("imoveis.autenticacao.cache.capacidade", 10000),
+            Long.getLong("imoveis.autenticacao.cache.ttlSegundos", 60));
+
+    private final int capacidade;
+    private final long ttlNanos;
+    private final LinkedHashMap<String, Entrada> entradas;
+    // protegidos pelo lock de entradas
+    private final Map<Long, Long> geracaoDaInvalidacao = new HashMap<>();
+    private long geracao;
+    private long geracaoMinima;
+
+    private final LongAdder acertos = new LongAdder();
+    private final LongAdder faltas = new LongAdder();
+    private final LongAdder despejos = new LongAdder();
+    private final LongAdder expiracoes = new LongAdder();
+    private final LongAdder invalidacoes = new LongAdder();
+
+    public CacheDeAutenticacao(int capacidade, long ttlSegundos) {
+        this.capacidade = capacidade;
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSegundos);
+        this.entradas = new LinkedHashMap<String, Entrada>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entrada> maisAntiga) {
+                if (size() > CacheDeAutenticacao.this.capacidade) {
+                    despejos.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public static CacheDeAutenticacao getInstancia() {
+        return INSTANCIA;
+    }
+
+    public Usuario obter(String username, String password) {
+        String chave = gerarChave(username, password);
+        synchronized (entradas) {
+            Entrada entrada = entradas.get(chave);
+            if (entrada == null) {
+                faltas.increment();
+                return null;
+            }
+            if (entrada.expiraEm - System.nanoTime() <= 0) {
+                entradas.remove(chave);
+                expiracoes.increment();
+                faltas.increment();
+                return null;
+            }
+            acertos.increment();
+            return entrada.usuario;
+        }
+    }
+
+    // Obtida antes de ler o usuario do banco e informada em armazenar.
+    public long geracaoAtual() {
+        synchronized (entradas) {
+            return geracao;
+        }
+    }
+
+    // Nao armazena o usuario invalidado depois da geracao em que foi lido.
+    public void armazenar(String username, String password, Usuario usuario, long geracaoDaLeitura) {
+        String chave = gerarChave(username, password);
+        synchronized (entradas) {
+            Long invalidacao = geracaoDaInvalidacao.get(usuario.getId());
+            if ((geracaoDaLeitura < geracaoMinima) || ((invalidacao != null) && (invalidacao > geracaoDaLeitura))) {
+                return;
+            }
+            entradas.put(chave, new Entrada(usuario, System.nanoTime() + ttlNanos));
+        }
+    }
+
+    // Remove todas as credenciais associadas ao usuario (ex.: apos alteracao de senha ou tipo, ou exclusao).
+    public void invalidar(long usuarioId) {
+        synchronized (entradas) {
+            geracaoDaInvalidacao.put(usuarioId, ++geracao);
+            if (geracaoDaInvalidacao.size() > capacidade) {
+                // sem guardar uma geracao por usuario para sempre: leituras anteriores a esta sao todas descartadas
+                geracaoDaInvalidacao.clear();
+                geracaoMinima = geracao;
+            }
+            Iterator<Entrada> iterator = entradas.values().iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().usuario.getId() == usuarioId) {
+                    iterator.remove();
+                    invalidacoes.increment();
+                }
+            }
+        }
+    }
+
+    public void limpar() {
+        synchronized (entradas) {
+            geracaoDaInvalidacao.clear();
+            geracaoMinima = ++geracao;
+            invalidacoes.add(entradas.size());
+            entradas.clear();
+        }
+    }
+
+    public EstatisticasCache obterEstatisticas() {
+        int tamanho;
+        synchronized (entradas) {
+            tamanho = entradas.size();
+        }
+        return new EstatisticasCache(tamanho, capacidade, acertos.sum(), faltas.sum(), despejos.sum(),
+                expiracoes.sum(), invalidacoes.sum());
+    }
+
+    private static String gerarChave(String username, String password) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+        digest.update(username.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) ':');
+        byte[] hash = digest.digest(password.getBytes(StandardCharsets.UTF_8));
+
+        StringBuilder chave = new StringBuilder(hash.length * 2);
+        for (byte b : hash) {
+            chave.append(Character.forDigit((b >> 4) & 0xF, 16));
+            chave.append(Character.forDigit(b & 0xF, 16));
+        }
+        return chave.toString();
+    }
+
+    private static final class Entrada {
+
+        private final Usuario usuario;
+        private final long expiraEm;
+
+        private Entrada(Usuario usuario, long expiraEm) {
+            this.usuario = usuario;
+            this.expiraEm = expiraEm;
+        }
+    }
+
+}
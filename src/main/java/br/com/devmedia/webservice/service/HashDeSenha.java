@@ -0,0 +1,83 @@
+package br.com.devmedia.webservice.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.security.spec.KeySpec;
+import java.util.Base64;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+// 1. Hash adaptativo de senhas com PBKDF2 (HMAC-SHA256), no formato pbkdf2-sha256$iteracoes$salt$hash.
+// 2. O numero de iteracoes e ajustavel pela propriedade de sistema imoveis.senha.iteracoes; hashes gerados com
+//    menos iteracoes (ou senhas ainda gravadas em texto puro) sao atualizados no proximo login.
+
+public final class HashDeSenha {
+
+    private static final String PREFIXO = "pbkdf2-sha256";
+    private static final String ALGORITMO = "PBKDF2WithHmacSHA256";
+    private static final int TAMANHO_SALT = 16;
+    private static final int TAMANHO_HASH = 32;
+
+    static final int ITERACOES = Integer.getInteger("imoveis.senha.iteracoes", 310000);
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private HashDeSenha() { }
+
+    public static String gerar(String senha) {
+        byte[] salt = new byte[TAMANHO_SALT];
+        RANDOM.nextBytes(salt);
+        byte[] hash = pbkdf2(senha, salt, ITERACOES);
+        Base64.Encoder encoder = Base64.getEncoder().withoutPadding();
+        return PREFIXO + "$" + ITERACOES + "$" + encoder.encodeToString(salt) + "$" + encoder.encodeToString(hash);
+    }
+
+    public static boolean verificar(String senha, String armazenado) {
+        if (armazenado == null) {
+            return false;
+        }
+        if (!isHash(armazenado)) {
+            // senha legada, gravada em texto puro
+            return MessageDigest.isEqual(senha.getBytes(StandardCharsets.UTF_8),
+                    armazenado.getBytes(StandardCharsets.UTF_8));
+        }
+        String[] partes = armazenado.split("\\$");
+        if (partes.length != 4) {
+            return false;
+        }
+        try {
+            Base64.Decoder decoder = Base64.getDecoder();
+            byte[] salt = decoder.decode(partes[2]);
+            byte[] esperado = decoder.decode(partes[3]);
+            return MessageDigest.isEqual(esperado, pbkdf2(senha, salt, Integer.parseInt(partes[1])));
+        } catch (IllegalArgumentException ex) {
+            // hash armazenado corrompido (iteracoes, salt ou Base64 invalidos): a senha nao e reconhecida
+            return false;
+        }
+    }
+
+    public static boolean precisaAtualizar(String armazenado) {
+        if (!isHash(armazenado)) {
+            return true;
+        }
+        String[] partes = armazenado.split("\\$");
+        return (partes.length != 4) || (Integer.parseInt(partes[1]) < ITERACOES);
+    }
+
+    public static boolean isHash(String valor) {
+        return (valor != null) && valor.startsWith(PREFIXO + "$");
+    }
+
+    private static byte[] pbkdf2(String senha, byte[] salt, int iteracoes) {
+        KeySpec spec = new PBEKeySpec(senha.toCharArray(), salt, iteracoes, TAMANHO_HASH * 8);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITMO).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+}
@@ -1,14 +1,43 @@
 package br.com.devmedia.webservice.service;
 
+import br.com.devmedia.webservice.dao.FiltroImovel;
 import br.com.devmedia.webservice.dao.ImovelDAO;
+import br.com.devmedia.webservice.dao.OrdenacaoImovel;
+import br.com.devmedia.webservice.dao.UsuarioDAO;
 import br.com.devmedia.webservice.domain.Direcionamento;
 import br.com.devmedia.webservice.domain.Imovel;
+import br.com.devmedia.webservice.indice.IndiceImoveis;
 
+import javax.inject.Inject;
+import javax.persistence.EntityNotFoundException;
+import javax.persistence.OptimisticLockException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 public class ImovelService {
 
-    private final ImovelDAO imovelDAO = new ImovelDAO();
+    private static final int TAMANHO_DO_LOTE_DO_INDICE = 1000;
+    private static final int TAMANHO_DO_LOTE_DE_IDS = 1000;
+
+    private final ImovelDAO imovelDAO;
+    private final UsuarioDAO usuarioDAO;
+    private final IndiceImoveis indiceImoveis = IndiceImoveis.getInstancia();
+
+    // Fora do Jersey (inicializacao, benchmarks); nas requisicoes a instancia e unica (ver ServicosDaAplicacao).
+    public ImovelService() {
+        this(new ImovelDAO(), new UsuarioDAO());
+    }
+
+    @Inject
+    public ImovelService(ImovelDAO imovelDAO, UsuarioDAO usuarioDAO) {
+        this.imovelDAO = imovelDAO;
+        this.usuarioDAO = usuarioDAO;
+    }
 
     public void cadastrarImovel(Imovel imovel, long donoImovelId) {
         imovelDAO.salvarImovel(imovel, donoImovelId);
@@ -18,36 +47,115 @@ public class ImovelService {
         imovelDAO.excluirImovel(id);
     }
 
-    public void atualizarImovel(long imovelId, Imovel imovel) {
+    // PUT. Com a versao (If-Match ou campo "versao") o imovel e gravado sem ser lido antes; sem ela, e lido e
+    // tem todos os campos substituidos. Versao desatualizada resulta em OptimisticLockException.
+    public Imovel atualizarImovel(long imovelId, Imovel imovel, Long versaoEsperada) {
         imovel.setId(imovelId);
-        imovelDAO.atualizarImovel(imovel);
+        if (versaoEsperada != null) {
+            imovel.setVersao(versaoEsperada);
+        }
+        if (imovel.getVersao() == null) {
+            return imovelDAO.atualizarImovel(imovelId, null, imovelManaged -> {
+                imovelManaged.setNome(imovel.getNome());
+                imovelManaged.setDirecionamento(imovel.getDirecionamento());
+                imovelManaged.setEndereco(imovel.getEndereco());
+                imovelManaged.setValor(imovel.getValor());
+            });
+        }
+        try {
+            return imovelDAO.substituirImovel(imovel);
+        } catch (OptimisticLockException ex) {
+            // nenhuma linha alterada: so aqui e preciso saber se o imovel existe
+            if (imovelDAO.recuperarVersaoDoImovel(imovelId) == null) {
+                throw new EntityNotFoundException("Imovel nao encontrado.");
+            }
+            throw ex;
+        }
     }
 
-    public List<Imovel> listarImoveis() {
-        return imovelDAO.selecionarImoveis();
+    // PATCH: apenas os campos informados (nao nulos) sao alterados.
+    public Imovel alterarImovel(long imovelId, Imovel alteracoes, Long versaoEsperada) {
+        Long versao = (versaoEsperada != null) ? versaoEsperada : alteracoes.getVersao();
+        return imovelDAO.atualizarImovel(imovelId, versao, imovelManaged -> {
+            if (alteracoes.getNome() != null) {
+                imovelManaged.setNome(alteracoes.getNome());
+            }
+            if (alteracoes.getDirecionamento() != null) {
+                imovelManaged.setDirecionamento(alteracoes.getDirecionamento());
+            }
+            if (alteracoes.getEndereco() != null) {
+                imovelManaged.setEndereco(alteracoes.getEndereco());
+            }
+            if (alteracoes.getValor() != null) {
+                imovelManaged.setValor(alteracoes.getValor());
+            }
+        });
+    }
+
+    public void listarImoveis(OrdenacaoImovel ordenacao, Consumer<Imovel> consumidor) {
+        imovelDAO.transmitirImoveis(ordenacao, consumidor);
+    }
+
+    // Retorna null quando o usuario dono dos imoveis nao existe.
+    public ImportacaoDeImoveis iniciarImportacao(long donoImovelId) {
+        if (usuarioDAO.recuperarUsuarioPorId(donoImovelId) == null) {
+            return null;
+        }
+        return new ImportacaoDeImoveis(imovelDAO, donoImovelId);
     }
 
     public Imovel obterImovel(long id) {
         return imovelDAO.recuperarImovelPorId(id);
     }
 
-    public List<Imovel> obterImoveisPorPaginacao(int offset, int limit) {
-        return imovelDAO.listarImoveisPorPaginacao(offset, limit);
+    // Retorna null quando o imovel nao existe.
+    public Long obterVersaoDoImovel(long id) {
+        return imovelDAO.recuperarVersaoDoImovel(id);
     }
 
-    public List<Imovel> obterImoveisPorNome(String name) {
-        return imovelDAO.listarImoveisPorNome(name);
+    public String obterEstadoDosImoveis() {
+        return imovelDAO.recuperarEstadoDosImoveis();
     }
 
-    public List<Imovel> obterImoveisPorEndereco(String endereco) {
-        return imovelDAO.listarImoveisPorEndereco(endereco);
+    // Buscas por nome ou endereco sao resolvidas pelo indice textual, que aplica tambem os demais criterios, a
+    // ordenacao (ou a relevancia) e a paginacao, e devolve os ids da pagina. O banco apenas carrega esses
+    // imoveis (em lotes, para nao passar do limite de parametros de um comando), conferindo de novo os criterios.
+    public List<Imovel> pesquisarImoveis(FiltroImovel filtro) {
+        if (((filtro.getNome() == null) && (filtro.getEndereco() == null)) || !indiceImoveis.isDisponivel()) {
+            return imovelDAO.pesquisarImoveis(filtro);
+        }
+
+        List<Long> ids = indiceImoveis.pesquisar(filtro);
+        if (ids == null) {
+            return imovelDAO.pesquisarImoveis(filtro);
+        }
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        FiltroImovel daPagina = new FiltroImovel();
+        daPagina.setDirecionamento(filtro.getDirecionamento());
+        daPagina.setValorMinimo(filtro.getValorMinimo());
+        daPagina.setValorMaximo(filtro.getValorMaximo());
+        List<Imovel> imoveis = new ArrayList<>(ids.size());
+        for (int inicio = 0; inicio < ids.size(); inicio += TAMANHO_DO_LOTE_DE_IDS) {
+            daPagina.setIds(ids.subList(inicio, Math.min(inicio + TAMANHO_DO_LOTE_DE_IDS, ids.size())));
+            imoveis.addAll(imovelDAO.pesquisarImoveis(daPagina));
+        }
+
+        Map<Long, Integer> posicoes = new HashMap<>();
+        for (int i = 0; i < ids.size(); i++) {
+            posicoes.put(ids.get(i), i);
+        }
+        imoveis.sort(Comparator.comparing(imovel -> posicoes.get(imovel.getId())));
+        return imoveis;
     }
 
-    public List<Imovel> obterImoveisPorDirecionamento(String direcionamento) {
-        return imovelDAO.listarImoveisPorDirecionamento(direcionamentoConverter(direcionamento));
+    public int reconstruirIndice() {
+        return indiceImoveis.reconstruir(consumidor -> imovelDAO.percorrerImoveis(TAMANHO_DO_LOTE_DO_INDICE, consumidor));
     }
 
-    private Direcionamento direcionamentoConverter(String direcionamento) {
+    public Direcionamento direcionamentoConverter(String direcionamento) {
         if (direcionamento.equalsIgnoreCase("venda")) {
             return Direcionamento.VENDA;
         } else {
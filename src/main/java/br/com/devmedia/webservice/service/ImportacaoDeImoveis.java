@@ -0,0 +1,95 @@
+package br.com.devmedia.webservice.service;
+
+import br.com.devmedia.webservice.dao.ImovelDAO;
+import br.com.devmedia.webservice.domain.FalhaImportacao;
+import br.com.devmedia.webservice.domain.Imovel;
+import br.com.devmedia.webservice.domain.ResultadoImportacao;
+
+import javax.persistence.PersistenceException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+// 1. Recebe os imoveis de uma importacao em lote a medida que sao lidos da requisicao e os grava em lotes
+//    de tamanho fixo (imoveis.importacao.tamanhoDoLote), cada lote em uma transacao, usando o batch JDBC.
+// 2. Se a gravacao de um lote falhar (ate o commit, inclusive), seus itens sao regravados um a um: apenas os
+//    itens com problema ficam de fora e sao informados no resultado, com a posicao que ocupavam na requisicao.
+//    O que o DAO faz depois do commit (cache e indice textual) nao lanca excecao, ja que regravar um lote
+//    confirmado duplicaria os imoveis.
+
+public class ImportacaoDeImoveis {
+
+    private static final int TAMANHO_DO_LOTE = Integer.getInteger("imoveis.importacao.tamanhoDoLote", 50);
+
+    private final ImovelDAO imovelDAO;
+    private final long donoImovelId;
+
+    private final List<Imovel> lote = new ArrayList<>(TAMANHO_DO_LOTE);
+    private final List<Integer> posicoes = new ArrayList<>(TAMANHO_DO_LOTE);
+    private final ResultadoImportacao resultado = new ResultadoImportacao();
+    private int recebidos;
+
+    ImportacaoDeImoveis(ImovelDAO imovelDAO, long donoImovelId) {
+        this.imovelDAO = imovelDAO;
+        this.donoImovelId = donoImovelId;
+    }
+
+    public void adicionar(Imovel imovel) {
+        // o id e sempre gerado pelo banco e a versao comeca do zero
+        imovel.setId(0);
+        imovel.setVersao(null);
+        lote.add(imovel);
+        posicoes.add(recebidos++);
+        if (lote.size() >= TAMANHO_DO_LOTE) {
+            gravarLote();
+        }
+    }
+
+    // Item que nem chegou a ser lido (ex.: JSON invalido).
+    public void registrarFalha(String mensagem) {
+        resultado.getFalhas().add(new FalhaImportacao(recebidos++, mensagem));
+    }
+
+    public ResultadoImportacao concluir() {
+        gravarLote();
+        resultado.setRecebidos(recebidos);
+        resultado.getFalhas().sort(Comparator.comparingInt(FalhaImportacao::getIndice));
+        return resultado;
+    }
+
+    private void gravarLote() {
+        if (lote.isEmpty()) {
+            return;
+        }
+        try {
+            imovelDAO.salvarImoveis(lote, donoImovelId);
+            resultado.setImportados(resultado.getImportados() + lote.size());
+        } catch (PersistenceException erroNoLote) {
+            for (int i = 0; i < lote.size(); i++) {
+                Imovel imovel = lote.get(i);
+                imovel.setId(0);
+                imovel.setVersao(null);
+                try {
+                    imovelDAO.salvarImoveis(Collections.singletonList(imovel), donoImovelId);
+                    resultado.setImportados(resultado.getImportados() + 1);
+                } catch (RuntimeException ex) {
+                    resultado.getFalhas().add(new FalhaImportacao(posicoes.get(i), mensagemDe(ex)));
+                }
+            }
+        } finally {
+            lote.clear();
+            posicoes.clear();
+        }
+    }
+
+    private static String mensagemDe(Throwable erro) {
+        Throwable causa = erro;
+        while (causa.getCause() != null) {
+            causa = causa.getCause();
+        }
+        return causa.getMessage() != null ? causa.getMessage() : causa.getClass().getSimpleName();
+    }
+
+}
@@ -1,27 +1,61 @@
 package br.com.devmedia.webservice.service;
 
 import br.com.devmedia.webservice.dao.UsuarioDAO;
+import br.com.devmedia.webservice.domain.EstatisticasCache;
 import br.com.devmedia.webservice.domain.Tipo;
 import br.com.devmedia.webservice.domain.Usuario;
 
+import javax.inject.Inject;
 import javax.persistence.NoResultException;
-import java.util.List;
+import java.util.function.Consumer;
 
 public class UsuarioService {
 
-    private final UsuarioDAO usuarioDAO = new UsuarioDAO();
+    private static final String HASH_FICTICIO = HashDeSenha.gerar("senha-ficticia");
 
-    public Usuario autenticarUsuario(Usuario usuario) {
+    private final UsuarioDAO usuarioDAO;
+    private final CacheDeAutenticacao cacheDeAutenticacao = CacheDeAutenticacao.getInstancia();
+    private final VerificadorDeSenha verificadorDeSenha = VerificadorDeSenha.getInstancia();
+
+    // Fora do Jersey (benchmarks); nas requisicoes a instancia e unica (ver ServicosDaAplicacao).
+    public UsuarioService() {
+        this(new UsuarioDAO());
+    }
+
+    @Inject
+    public UsuarioService(UsuarioDAO usuarioDAO) {
+        this.usuarioDAO = usuarioDAO;
+    }
+
+    // A senha e verificada contra o hash apenas quando as credenciais nao estao no cache de autenticacao,
+    // de modo que o hash (lento de proposito) e calculado uma vez por credencial a cada TTL do cache.
+    public Usuario autenticarUsuario(String username, String password) {
+        Usuario usuarioAutenticado = cacheDeAutenticacao.obter(username, password);
+        if (usuarioAutenticado != null) {
+            return usuarioAutenticado;
+        }
+        long geracao = cacheDeAutenticacao.geracaoAtual();
         try {
-            usuario = usuarioDAO.recuperarUsuarioPorUsernameEPassword(usuario.getUsername(), usuario.getPassword());
+            usuarioAutenticado = usuarioDAO.recuperarUsuarioPorUsername(username);
         } catch (NoResultException ex) {
+            // mantem o mesmo custo de um usuario existente, sem revelar quais usernames existem
+            verificadorDeSenha.verificar(password, HASH_FICTICIO);
+            return null;
+        }
+        String senhaArmazenada = usuarioAutenticado.getPassword();
+        if (!verificadorDeSenha.verificar(password, senhaArmazenada)) {
             return null;
         }
-        return usuario;
+        if (HashDeSenha.precisaAtualizar(senhaArmazenada)) {
+            usuarioDAO.atualizarSenha(usuarioAutenticado.getId(), HashDeSenha.gerar(password));
+        }
+        cacheDeAutenticacao.armazenar(username, password, usuarioAutenticado, geracao);
+        return usuarioAutenticado;
     }
 
     public Usuario saveUsuario(Usuario usuario) {
         if (Tipo.CLIENTE.equals(usuario.getTipo())) {
+            usuario.setPassword(HashDeSenha.gerar(usuario.getPassword()));
             return usuarioDAO.salvarUsuario(usuario);
         }
         return null;
@@ -31,16 +65,60 @@ public class UsuarioService {
         return usuarioDAO.recuperarUsuarioPorId(id);
     }
 
-    public List<Usuario> getUsuarios() {
-        return usuarioDAO.selecionarUsuarios();
+    // Retorna null quando o usuario nao existe.
+    public Long getVersaoDoUsuario(long id) {
+        return usuarioDAO.recuperarVersaoDoUsuario(id);
     }
 
-    public void updateUsuario(Usuario usuario, long id) {
-        usuario.setId(id);
-        usuarioDAO.atualizarUsuario(usuario);
+    public String getEstadoDosUsuarios() {
+        return usuarioDAO.recuperarEstadoDosUsuarios();
+    }
+
+    public void getUsuarios(Consumer<Usuario> consumidor) {
+        usuarioDAO.transmitirUsuarios(consumidor);
+    }
+
+    // PUT: nome e tipo sao substituidos; a senha (que nunca e devolvida ao cliente) so muda quando informada.
+    // Com a versao (If-Match ou campo "versao"), uma alteracao concorrente resulta em OptimisticLockException.
+    public Usuario updateUsuario(Usuario usuario, long id, Long versaoEsperada) {
+        String senha = (usuario.getPassword() != null) ? HashDeSenha.gerar(usuario.getPassword()) : null;
+        Long versao = (versaoEsperada != null) ? versaoEsperada : usuario.getVersao();
+        Usuario atualizado = usuarioDAO.atualizarUsuario(id, versao, usuarioManaged -> {
+            usuarioManaged.setNome(usuario.getNome());
+            usuarioManaged.setTipo(usuario.getTipo());
+            if (senha != null) {
+                usuarioManaged.setPassword(senha);
+            }
+        });
+        cacheDeAutenticacao.invalidar(id);
+        return atualizado;
+    }
+
+    // PATCH: apenas os campos informados (nao nulos) sao alterados.
+    public Usuario patchUsuario(Usuario alteracoes, long id, Long versaoEsperada) {
+        String senha = (alteracoes.getPassword() != null) ? HashDeSenha.gerar(alteracoes.getPassword()) : null;
+        Long versao = (versaoEsperada != null) ? versaoEsperada : alteracoes.getVersao();
+        Usuario atualizado = usuarioDAO.atualizarUsuario(id, versao, usuarioManaged -> {
+            if (alteracoes.getNome() != null) {
+                usuarioManaged.setNome(alteracoes.getNome());
+            }
+            if (alteracoes.getTipo() != null) {
+                usuarioManaged.setTipo(alteracoes.getTipo());
+            }
+            if (senha != null) {
+                usuarioManaged.setPassword(senha);
+            }
+        });
+        cacheDeAutenticacao.invalidar(id);
+        return atualizado;
     }
 
     public void deleteUsuario(long id) {
         usuarioDAO.excluirUsuario(id);
+        cacheDeAutenticacao.invalidar(id);
+    }
+
+    public EstatisticasCache getEstatisticasCacheDeAutenticacao() {
+        return cacheDeAutenticacao.obterEstatisticas();
     }
 }
@@ -0,0 +1,75 @@
+package br.com.devmedia.webservice.service;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// 1. Executa a verificacao de senhas (PBKDF2, propositalmente lenta) em um pool dedicado e limitado, que
+//    limita quantos hashes sao calculados ao mesmo tempo, de modo que uma rajada de logins nao ocupe todos os
+//    processadores. A thread da requisicao continua bloqueada ate o resultado (Future.get): o pool nao libera as
+//    threads do container, apenas faz as excedentes esperarem na fila em vez de disputar a CPU.
+// 2. Quando a fila esta cheia ou a verificacao excede o tempo limite, lanca RejectedExecutionException
+//    (o filtro de autenticacao responde 503).
+// 3. Configuracao (propriedades de sistema): imoveis.senha.threads, imoveis.senha.fila e
+//    imoveis.senha.timeoutMs.
+
+public final class VerificadorDeSenha {
+
+    private static final VerificadorDeSenha INSTANCIA = new VerificadorDeSenha(
+            Integer.getInteger("imoveis.senha.threads", Runtime.getRuntime().availableProcessors()),
+            Integer.getInteger("imoveis.senha.fila", 256),
+            Long.getLong("imoveis.senha.timeoutMs", 5000));
+
+    private final ThreadPoolExecutor executor;
+    private final long timeoutMs;
+
+    private VerificadorDeSenha(int threads, int capacidadeDaFila, long timeoutMs) {
+        this.timeoutMs = timeoutMs;
+        AtomicInteger contador = new AtomicInteger();
+        ThreadFactory threadFactory = tarefa -> {
+            Thread thread = new Thread(tarefa, "verificador-de-senha-" + contador.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(capacidadeDaFila), threadFactory, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    public static VerificadorDeSenha getInstancia() {
+        return INSTANCIA;
+    }
+
+    public boolean verificar(String senha, String armazenado) {
+        Future<Boolean> resultado = executor.submit(() -> HashDeSenha.verificar(senha, armazenado));
+        try {
+            return resultado.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException ex) {
+            resultado.cancel(true);
+            throw new RejectedExecutionException("Tempo limite excedido na verificacao da senha.", ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException(ex);
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException(ex.getCause());
+        }
+    }
+
+    public int getTamanhoDaFila() {
+        return executor.getQueue().size();
+    }
+
+    public int getVerificacoesEmAndamento() {
+        return executor.getActiveCount();
+    }
+
+    public void encerrar() {
+        executor.shutdownNow();
+    }
+
+}
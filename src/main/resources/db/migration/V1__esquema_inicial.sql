@@ -0,0 +1,33 @@
+-- Esquema das entidades Usuario e Imovel, equivalente ao criado pelo antigo hibernate.hbm2ddl.auto=update.
+-- Bancos ja existentes registram esta versao como base, sem executa-la (ver MigracaoDoBanco).
+
+create table gerador_ids (
+    entidade varchar(255) not null,
+    proximo_valor bigint,
+    primary key (entidade)
+);
+
+create table Usuario (
+    id bigint not null auto_increment,
+    nome varchar(255),
+    password varchar(255),
+    tipo varchar(255),
+    username varchar(255),
+    versao bigint,
+    primary key (id)
+);
+
+alter table Usuario add constraint uk_usuario_username unique (username);
+
+create table Imovel (
+    id bigint not null,
+    direcionamento varchar(255),
+    endereco varchar(255),
+    nome varchar(255),
+    valor double precision,
+    versao bigint,
+    usuario_id bigint,
+    primary key (id)
+);
+
+alter table Imovel add constraint fk_imovel_usuario foreign key (usuario_id) references Usuario (id);
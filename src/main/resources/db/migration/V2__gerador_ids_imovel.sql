@@ -0,0 +1,6 @@
+-- Os ids dos imoveis vem de um gerador em tabela (ver Imovel), que precisa comecar acima dos ids ja existentes,
+-- criados quando a tabela usava auto-incremento. So grava a linha do gerador se ela ainda nao existir.
+
+insert into gerador_ids (entidade, proximo_valor)
+select 'Imovel', coalesce(max(id), 0) + 51 from Imovel
+where not exists (select 1 from gerador_ids where entidade = 'Imovel');
@@ -0,0 +1,10 @@
+-- A coluna versao (@Version) foi criada pelo antigo hibernate.hbm2ddl.auto=update como opcional, e as linhas que
+-- ja existiam ficaram com versao nula: a ETag dessas linhas nao era calculada (404 em entidades existentes) e o
+-- "update ... where versao = ?" do Hibernate nunca as alcancava. As nulas passam a 0 e a coluna a obrigatoria.
+-- Bancos registrados como base na versao 1 nao executam aquele script, por isso a correcao vem aqui.
+
+update Usuario set versao = 0 where versao is null;
+update Imovel set versao = 0 where versao is null;
+
+alter table Usuario modify versao bigint not null default 0;
+alter table Imovel modify versao bigint not null default 0;
@@ -0,0 +1,128 @@
+package br.com.devmedia.webservice.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import br.com.devmedia.webservice.dao.ContextoDePersistencia;
+import br.com.devmedia.webservice.dao.JPAUtil;
+import br.com.devmedia.webservice.dao.MonitorDeSql;
+import br.com.devmedia.webservice.dao.UsuarioDAO;
+import br.com.devmedia.webservice.domain.Direcionamento;
+import br.com.devmedia.webservice.domain.EstatisticasComandoSql;
+import br.com.devmedia.webservice.domain.Imovel;
+import br.com.devmedia.webservice.domain.Tipo;
+import br.com.devmedia.webservice.domain.Usuario;
+
+// 1. Comandos SQL da autenticacao, contados pelo MonitorDeSql contra um H2 em memoria que recebe a unidade de
+//    persistencia da aplicacao (propriedades de sistema, ver JPAUtil), com o ProvedorDeConexoesMonitorado do
+//    persistence.xml.
+// 2. Sem nada em cache, autenticar executa um unico comando (o SELECT do usuario pelo username): os imoveis do
+//    usuario nao sao carregados e a senha, gerada com as iteracoes atuais, nao e regravada.
+
+public class UsuarioServiceTest {
+
+    private static final String USERNAME = "dono";
+    private static final String SENHA = "segredo1";
+
+    private final UsuarioService usuarioService = new UsuarioService();
+
+    @BeforeClass
+    public static void iniciarBanco() {
+        System.setProperty("hibernate.connection.driver_class", "org.h2.Driver");
+        System.setProperty("hibernate.connection.url", "jdbc:h2:mem:usuarios;DB_CLOSE_DELAY=-1");
+        System.setProperty("hibernate.connection.username", "sa");
+        System.setProperty("hibernate.connection.password", "");
+        System.setProperty("hibernate.dialect", "org.hibernate.dialect.H2Dialect");
+        System.setProperty("hibernate.hbm2ddl.auto", "create");
+        System.setProperty("imoveis.senha.iteracoes", "1000");
+        JPAUtil.inicializar();
+
+        Usuario usuario = new Usuario();
+        usuario.setNome(USERNAME);
+        usuario.setUsername(USERNAME);
+        usuario.setPassword(HashDeSenha.gerar(SENHA));
+        usuario.setTipo(Tipo.CLIENTE);
+        try {
+            usuario = new UsuarioDAO().salvarUsuario(usuario);
+        } finally {
+            ContextoDePersistencia.fechar();
+        }
+
+        ImportacaoDeImoveis importacao = new ImovelService().iniciarImportacao(usuario.getId());
+        try {
+            for (int i = 1; i <= 3; i++) {
+                Imovel imovel = new Imovel();
+                imovel.setNome("Casa " + i);
+                imovel.setEndereco("Rua das Flores, " + i);
+                imovel.setDirecionamento(Direcionamento.VENDA);
+                imovel.setValor(100000.0 * i);
+                importacao.adicionar(imovel);
+            }
+            importacao.concluir();
+        } finally {
+            ContextoDePersistencia.fechar();
+        }
+    }
+
+    @AfterClass
+    public static void encerrarBanco() {
+        JPAUtil.fechar();
+    }
+
+    @Before
+    public void esvaziarCaches() {
+        JPAUtil.getCache().evictAllRegions();
+        CacheDeAutenticacao.getInstancia().limpar();
+        MonitorDeSql.getInstancia().limpar();
+    }
+
+    @Test
+    public void autenticacaoSemCacheExecutaUmUnicoComando() {
+        Usuario usuario = autenticar(SENHA);
+
+        assertNotNull(usuario);
+        assertEquals(1, comandosExecutados());
+    }
+
+    @Test
+    public void autenticacaoEmCacheNaoExecutaComandos() {
+        autenticar(SENHA);
+        MonitorDeSql.getInstancia().limpar();
+
+        Usuario usuario = autenticar(SENHA);
+
+        assertNotNull(usuario);
+        assertEquals(0, comandosExecutados());
+    }
+
+    @Test
+    public void senhaErradaExecutaUmUnicoComando() {
+        Usuario usuario = autenticar("errada");
+
+        assertNull(usuario);
+        assertEquals(1, comandosExecutados());
+    }
+
+    private Usuario autenticar(String senha) {
+        try {
+            return usuarioService.autenticarUsuario(USERNAME, senha);
+        } finally {
+            ContextoDePersistencia.fechar();
+        }
+    }
+
+    private static long comandosExecutados() {
+        long execucoes = 0;
+        for (EstatisticasComandoSql comando : MonitorDeSql.getInstancia().obterEstatisticas()) {
+            execucoes += comando.getExecucoes();
+        }
+        return execucoes;
+    }
+
+}